@@ -8,7 +8,9 @@ package nl.tue.s2id90.group28;
 import java.util.List;
 import java.util.Objects;
 import nl.tue.s2id90.draughts.DraughtsState;
+import nl.tue.s2id90.draughts.PackedMove;
 import nl.tue.s2id90.draughts.player.DraughtsPlayer;
+import nl.tue.s2id90.game.Game.Result;
 import org10x10.dam.game.Move;
 
 /**
@@ -22,227 +24,432 @@ public class AlphaBetaPlayer extends DraughtsPlayer {
     private boolean isBlack;
     
     /** Whether the program has signalled the AI to stop computing */
-    private boolean stopped = false;
+    private volatile boolean stopped = false;
+    
+    /** Decides whether another iteration fits in the time of the move; a
+     * drop of 5% in the ratio of the material counts as a score drop */
+    private final TimeManager timeManager = new TimeManager(0.05);
+    
+    /** The best move of the current iteration so far; the first move that
+     * is searched is the best move of the previous iteration, so this move
+     * is at least as good */
+    private long partialMove;
+    
+    /** Maximum depth of the iterative deepening */
+    private static final int MAX_DEPTH = 100;
+    
+    /** Maximum number of plies of the quiescence search */
+    private static final int MAX_QUIESCENCE_DEPTH = 40;
+    
+    /** Maximum number of nodes of the quiescence search of a leaf; when it
+     * is used up, the remaining positions are evaluated as they are */
+    private static final int QUIESCENCE_BUDGET = 2000;
+    
+    /** Safety margin of the delta pruning, in piece value units */
+    private static final double DELTA_MARGIN = 100;
+    
+    /** A move buffer for each ply, so that the search does not allocate
+     * memory per node */
+    private final long[][] moveBuffers
+            = new long[MAX_DEPTH + MAX_QUIESCENCE_DEPTH][DraughtsState.MAX_MOVES];
+    
+    /** Nodes left in the quiescence search of the current leaf */
+    private int quiescenceNodes;
+    
+    /** The material of this player and of the opponent, as computed by the
+     * last call of countMaterial */
+    private double ownValue, opponentValue;
+    
+    /** Value of a drawn game: the ratio of equal material */
+    private static final double DRAW_VALUE = 1;
+    
+    /** Computes the material on the board */
+    private final Evaluator evaluator = new Evaluator();
+    
+    /** Default size of the transposition table in MB */
+    public static final int DEFAULT_TABLE_SIZE = 32;
+    
+    /** The results of earlier searches, from the point of view of this
+     * player */
+    private final TranspositionTable table;
+    
+    /** Reusable array for an entry of the transposition table */
+    private final long[] entry = new long[3];
+    
+    /** Orders the moves of each node */
+    private final MoveOrderer orderer = new MoveOrderer(MAX_DEPTH);
+    
+    /** The move of the last table entry that was probed */
+    private long hashMove;
+    
+    /** The side the table values belong to; the table is cleared when this
+     * player plays the other side */
+    private Boolean tableIsBlack = null;
+    
+    public AlphaBetaPlayer() {
+        this(DEFAULT_TABLE_SIZE);
+    }
+    
+    /**
+     * Creates a player with a transposition table of the given size.
+     * @param tableSize size of the transposition table in MB
+     */
+    public AlphaBetaPlayer(int tableSize) {
+        table = new TranspositionTable(tableSize);
+    }
     
     @Override
-    public void stop() { stopped = true; }
+    public void stop() {
+        timeManager.stopped();
+        stopped = true;
+    }
     
     @Override
     public Move getMove(DraughtsState s) {
         // Get the moves
         List<Move> moves = s.getMoves();
-        Move bestMove = null;
+        stopped = false;
+        timeManager.startMove();
+        
+        // If we are forced to do a certain move, it is useless to search
+        if (moves.size() == 1) {
+            return moves.get(0);
+        }
         
         // See whether the player plays black or white
         isBlack = moves.get(0).isBlackMove();
+        if (tableIsBlack == null || tableIsBlack != isBlack) {
+            table.clear();
+            tableIsBlack = isBlack;
+        }
+        table.newSearch();
+        orderer.newSearch();
+        orderer.resetStatistics();
         
-        // Use alphabeta search with iterative deepening
-        for (int d = 3; d < 100; d++) {
+        // Use alphabeta search with iterative deepening, until the search is
+        // stopped, or as long as the next iteration is expected to finish
+        // in time
+        long bestMove = PackedMove.NONE;
+        int ply = s.getPly();
+        int d;
+        for (d = 1; d < MAX_DEPTH && timeManager.canStartIteration(); d++) {
             try {
-                bestMove = alphaBetaSearch(s, d);
+                bestMove = alphaBetaSearch(s, d, bestMove);
             } catch (AIStoppedException e) {
-                System.out.println("Depth level "+d+" reached.");
-                return bestMove;
+                // undo the moves of the interrupted search
+                s.undo(s.getPly() - ply);
+                
+                // A partial iteration is better than the previous one, as far
+                // as it got
+                if (partialMove != PackedMove.NONE) {
+                    bestMove = partialMove;
+                }
+                break;
             }
         }
-        return bestMove;
+        System.out.println("Depth level "+d+" reached in "
+                + timeManager.getElapsed() + " ms, "
+                + Math.round(100 * orderer.getFirstMoveCutoffRate())
+                + "% of the cutoffs by the first move.");
+        return bestMove == PackedMove.NONE ? moves.get(0) : s.toMove(bestMove);
     }
     
     /**
      * Evaluates the state {@code s}..
      * @param s the state
+     * @param endState whether the game is over: the player to move has no
+     * moves left, or the game is drawn
      * @return the evaluated value
      */
-    private double getValue(DraughtsState s, List<Move> moves) {
+    private double getValue(DraughtsState s, boolean endState) {
+        
+        // Check whether the game is drawn
+        if (endState && s.getResult() == Result.DRAW) {
+            return DRAW_VALUE;
+        }
         
         // Check whether this player has won or lost
-        if (moves.isEmpty() &&  (isBlack && s.isWhiteToMove()
+        if (endState &&  (isBlack && s.isWhiteToMove()
              || !isBlack && !s.isWhiteToMove())) {
             return Integer.MAX_VALUE;
-        } else if (moves.isEmpty()){
+        } else if (endState){
             return Integer.MIN_VALUE+1;
         }
         
-        int[] pieces = s.getPieces();
-        double blackValue = 0;
-        double whiteValue = 0;
-        //retrieve values of each piece
-        for (int p = 1; p < pieces.length; p++) {
-            switch (pieces[p]) {
-                case DraughtsState.BLACKPIECE:
-                    blackValue += getPieceValue(DraughtsState.BLACKPIECE, getRowNumber(p), false);
-                    break;
-                case DraughtsState.BLACKKING:
-                    blackValue += getPieceValue(getPosition(p), 0, true);
-                    break;
-                case DraughtsState.WHITEPIECE:
-                    whiteValue += getPieceValue(DraughtsState.WHITEPIECE, getRowNumber(p), false);
-                    break;
-                case DraughtsState.WHITEKING:
-                    whiteValue += getPieceValue(getPosition(p), 0, true);
-                    break;
-            }
-        }
+        countMaterial(s);
         
-        // Return total value as a ratio of black and white
+        // Return total value as a ratio of own and opponent material
         // Note: divide by zero cannot occur since then the function would have
         // already been terminated.
-        if(isBlack){
-            return blackValue / whiteValue;
-        } else {
-            return whiteValue / blackValue;
-        }
+        return ownValue / opponentValue;
     }
     
     /**
-     * Evaluates the row of {@code p}.
-     * @param p
-     * @return the row number of p
-     */
-    private int getRowNumber(int p){
-        return (int) (p / 5 - 0.1);
-    }
-    
-    /**
-     * Checks whether the piece is on the side or in the middle.
-     * @param p
-     * @return the position of p
-     * @note middle = 0
-     * @note left = 1
-     * @note right = 2
-     * @note top = 3
-     * @note bottom = 4
+     * Computes the material values of both players, in ownValue and
+     * opponentValue.
+     * @param s the state
      */
-    private int getPosition(int p){
-        if (p < 6) {
-            return 3;
-        } else if (p > 45) {
-            return 4;
-        } else if (p % 10 == 5){
-            return 2;
-        } else if (p % 10 == 6) {
-            return 1;
-        } else {
-            return 0;
-        }
+    private void countMaterial(DraughtsState s) {
+        evaluator.countMaterial(s);
+        ownValue = isBlack ? evaluator.getBlackValue() : evaluator.getWhiteValue();
+        opponentValue = isBlack ? evaluator.getWhiteValue() : evaluator.getBlackValue();
     }
     
     /**
-     * Evaluates the value of a single piece.
-     * @param position
-     * @param rowNumber
-     * @param isKing
-     * @return value of the piece
+     * Searches all moves of s to the given depth.
+     * @param previousMove best move of the previous iteration, or
+     * PackedMove.NONE
+     * @return the best move, packed
+     * @throws AIStoppedException if the search is stopped; partialMove is
+     * the best move so far
      */
-    private int getPieceValue(int position_color, int rowNumber, boolean isKing){
-        int value = 100;
-        if (isKing) {
-            value *= 2; //double the value for kings
-            if (position_color > 0) value += 20; //King is on the side
-        } else if (position_color == DraughtsState.BLACKPIECE){ // the piece is black
-            if (rowNumber == 9){ //defensive pieces are worth more
-                value += 20;
-            } else { 
-                value += (9-rowNumber) * 3; //the closer to becoming king, the more worth
-            }
-        } else { // the piece is white
-            if (rowNumber == 0){ //defensive pieces are worth more
-                value += 20;
-            } else { 
-                value += rowNumber * 3; //the closer to becoming king, the more worth
-            }
-        }
-
-        return value;
-    }
-    
-    
-    
-    private Move alphaBetaSearch(DraughtsState s, int depth) throws AIStoppedException{
-        List<Move> moves = s.getMoves();
+    private long alphaBetaSearch(DraughtsState s, int depth, long previousMove)
+            throws AIStoppedException{
+        long[] moves = moveBuffers[0];
+        int n = s.getMoves(moves, 0);
         
-        // If we are forced to do a certain move, it is useless to search all
-        // possibilities afterwards.
-        if (moves.size() == 1) {
-            return moves.get(0);
+        // Search the best move of the previous iteration first
+        if (previousMove == PackedMove.NONE && table.probe(s.getHash(), entry)) {
+            previousMove = TranspositionTable.getMove(entry);
         }
+        orderer.order(s, moves, n, 0, previousMove);
         
         double bestValue = Integer.MIN_VALUE;
-        Move bestMove = null;
+        long bestMove = PackedMove.NONE;
+        partialMove = PackedMove.NONE;
         
         // Find the best move
-        for (Move m : moves) {
-            s.doMove(m);
-            double value = alphaBetaMin(s, Integer.MIN_VALUE, Integer.MAX_VALUE, depth-1);
+        for (int i = 0; i < n; i++) {
+            s.doMove(moves[i]);
+            double value = alphaBetaMin(s, Integer.MIN_VALUE, Integer.MAX_VALUE, depth-1, 1);
             if (value > bestValue) {
                 bestValue = value;
-                bestMove = m;
+                bestMove = moves[i];
+                partialMove = bestMove;
             }
-            s.undoMove(m);
+            s.undoMove(moves[i]);
         }
+        table.store(s.getHash(), bestMove, bestValue, depth, TranspositionTable.EXACT);
+        timeManager.iterationDone(bestMove, bestValue);
         
         return bestMove;
     }
     
     private double alphaBetaMax(DraughtsState s, double alpha, double beta,
-                            int depth) throws AIStoppedException{
+                            int depth, int ply) throws AIStoppedException{
         // Check the time limit
         checkAndThrow();
         
-        List<Move> moves = s.getMoves();
+        // A repeated position can be repeated again, so it is a draw
+        if (s.isRepetition()) {
+            return DRAW_VALUE;
+        }
         
         // See whether this is a leaf
-        if (depth == 0 || moves.isEmpty()) {
-            return getValue(s, moves);
+        if (depth == 0) {
+            quiescenceNodes = QUIESCENCE_BUDGET;
+            return quiescenceMax(s, alpha, beta, ply);
+        }
+        
+        // Use the result of an earlier search of this position
+        long key = s.getHash();
+        double known = lookup(key, alpha, beta, depth);
+        if (!Double.isNaN(known)) {
+            return known;
+        }
+        
+        long[] moves = moveBuffers[ply];
+        int n = s.getMoves(moves, 0);
+        if (n == 0) {
+            return getValue(s, true);
         } else {
-            for (Move m : moves) {
+            orderer.order(s, moves, n, ply, hashMove);
+            double alphaOrig = alpha;
+            long bestMove = PackedMove.NONE;
+            for (int i = 0; i < n; i++) {
                 // Do the alphabeta step
-                s.doMove(m);
-                double min = alphaBetaMin(s, alpha, beta, depth - 1);
-                alpha = (alpha > min ? alpha : min);
-                s.undoMove(m);
+                s.doMove(moves[i]);
+                double min = alphaBetaMin(s, alpha, beta, depth - 1, ply + 1);
+                if (min > alpha) {
+                    alpha = min;
+                    bestMove = moves[i];
+                }
+                s.undoMove(moves[i]);
                 if (alpha >= beta) {
+                    orderer.cutoff(moves[i], ply, depth, i);
+                    table.store(key, moves[i], beta, depth, TranspositionTable.LOWER);
                     return beta;
                 }
             }
             
             // Ensure the value of each move is higher than the value of the
             // null move in alphaBetaSearch.
-            return (alpha==Integer.MIN_VALUE ? alpha+1 : alpha);
+            alpha = (alpha==Integer.MIN_VALUE ? alpha+1 : alpha);
+            table.store(key, bestMove, alpha, depth, alpha > alphaOrig
+                    ? TranspositionTable.EXACT : TranspositionTable.UPPER);
+            return alpha;
         }
     }
     
     private double alphaBetaMin(DraughtsState s, double alpha, double beta,
-                            int depth) throws AIStoppedException{
+                            int depth, int ply) throws AIStoppedException{
         // Check timelimit
         checkAndThrow();
         
-        List<Move> moves = s.getMoves();
+        // A repeated position can be repeated again, so it is a draw
+        if (s.isRepetition()) {
+            return DRAW_VALUE;
+        }
+        
         // Check if leafnode
-        if (depth == 0 || moves.isEmpty()) {
-            return getValue(s, moves);
+        if (depth == 0) {
+            quiescenceNodes = QUIESCENCE_BUDGET;
+            return quiescenceMin(s, alpha, beta, ply);
+        }
+        
+        // Use the result of an earlier search of this position
+        long key = s.getHash();
+        double known = lookup(key, alpha, beta, depth);
+        if (!Double.isNaN(known)) {
+            return known;
+        }
+        
+        long[] moves = moveBuffers[ply];
+        int n = s.getMoves(moves, 0);
+        if (n == 0) {
+            return getValue(s, true);
         } else {
-            for (Move m : moves) {
+            orderer.order(s, moves, n, ply, hashMove);
+            double betaOrig = beta;
+            long bestMove = PackedMove.NONE;
+            for (int i = 0; i < n; i++) {
                 // Do the alphabeta step
-                s.doMove(m);
-                double max = alphaBetaMax(s, alpha, beta, depth - 1);
-                beta = (beta < max ? beta : max);
-                s.undoMove(m);
+                s.doMove(moves[i]);
+                double max = alphaBetaMax(s, alpha, beta, depth - 1, ply + 1);
+                if (max < beta) {
+                    beta = max;
+                    bestMove = moves[i];
+                }
+                s.undoMove(moves[i]);
                 if (alpha >= beta) {
+                    orderer.cutoff(moves[i], ply, depth, i);
+                    table.store(key, moves[i], alpha, depth, TranspositionTable.UPPER);
                     return alpha;
                 }
             } 
+            table.store(key, bestMove, beta, depth, beta < betaOrig
+                    ? TranspositionTable.EXACT : TranspositionTable.LOWER);
             return beta;
         }
     }
     
+    /**
+     * Searches only the captures of a leaf, where this player is to move,
+     * until the position is quiet, so that a leaf is never evaluated in the
+     * middle of an exchange. Capturing is mandatory, so a position with a
+     * capture can not be evaluated as it is (no stand-pat); a position
+     * without one is evaluated as it is.
+     * <p>
+     * Delta pruning: if even winning the captured pieces without any
+     * recapture can not raise the value above alpha, the captures are not
+     * searched.
+     */
+    private double quiescenceMax(DraughtsState s, double alpha, double beta,
+                            int ply) throws AIStoppedException {
+        checkAndThrow();
+        boolean endState = s.isEndState();
+        if (endState || !s.hasCaptures() || quiescenceNodes <= 0
+                || ply >= moveBuffers.length) {
+            return getValue(s, endState);
+        }
+        quiescenceNodes--;
+        
+        long[] moves = moveBuffers[ply];
+        int n = s.getCaptures(moves, 0);
+        countMaterial(s);
+        double gain = PackedMove.getCaptureCount(moves[0]) * Evaluator.MAX_PIECE_VALUE + DELTA_MARGIN;
+        if (opponentValue > gain && ownValue / (opponentValue - gain) <= alpha) {
+            return alpha;
+        }
+        for (int i = 0; i < n; i++) {
+            s.doMove(moves[i]);
+            double min = quiescenceMin(s, alpha, beta, ply + 1);
+            alpha = (alpha > min ? alpha : min);
+            s.undoMove(moves[i]);
+            if (alpha >= beta) {
+                return beta;
+            }
+        }
+        return alpha;
+    }
+    
+    /**
+     * Searches only the captures of a leaf, where the opponent is to move.
+     * @see #quiescenceMax
+     */
+    private double quiescenceMin(DraughtsState s, double alpha, double beta,
+                            int ply) throws AIStoppedException {
+        checkAndThrow();
+        boolean endState = s.isEndState();
+        if (endState || !s.hasCaptures() || quiescenceNodes <= 0
+                || ply >= moveBuffers.length) {
+            return getValue(s, endState);
+        }
+        quiescenceNodes--;
+        
+        long[] moves = moveBuffers[ply];
+        int n = s.getCaptures(moves, 0);
+        countMaterial(s);
+        double loss = PackedMove.getCaptureCount(moves[0]) * Evaluator.MAX_PIECE_VALUE + DELTA_MARGIN;
+        if ((ownValue > loss ? ownValue - loss : 0) / opponentValue >= beta) {
+            return beta;
+        }
+        for (int i = 0; i < n; i++) {
+            s.doMove(moves[i]);
+            double max = quiescenceMax(s, alpha, beta, ply + 1);
+            beta = (beta < max ? beta : max);
+            s.undoMove(moves[i]);
+            if (alpha >= beta) {
+                return alpha;
+            }
+        }
+        return beta;
+    }
+    
+    /**
+     * Looks up a position in the transposition table, and sets hashMove to
+     * its best move.
+     * @param key Zobrist key of the position
+     * @param depth remaining depth
+     * @return the value of the position if an earlier search of at least
+     * this depth determines it within the window alpha..beta; NaN otherwise
+     */
+    private double lookup(long key, double alpha, double beta, int depth) {
+        hashMove = PackedMove.NONE;
+        if (!table.probe(key, entry)) {
+            return Double.NaN;
+        }
+        hashMove = TranspositionTable.getMove(entry);
+        if (TranspositionTable.getDepth(entry) < depth) {
+            return Double.NaN;
+        }
+        double score = TranspositionTable.getScore(entry);
+        switch (TranspositionTable.getBound(entry)) {
+            case TranspositionTable.EXACT:
+                return score;
+            case TranspositionTable.LOWER:
+                return score >= beta ? beta : Double.NaN;
+            default:
+                return score <= alpha ? alpha : Double.NaN;
+        }
+    }
+    
     /**
      * Checks whether the time is up.
      * @throws AIStoppedException 
      */
     private void checkAndThrow() throws AIStoppedException {
         if (stopped) {
-            stopped = false;
             throw new AIStoppedException();
         }
     }
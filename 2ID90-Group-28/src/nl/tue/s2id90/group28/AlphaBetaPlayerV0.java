@@ -8,6 +8,7 @@ package nl.tue.s2id90.group28;
 import java.util.List;
 import java.util.Objects;
 import nl.tue.s2id90.draughts.DraughtsState;
+import nl.tue.s2id90.draughts.PackedMove;
 import nl.tue.s2id90.draughts.player.DraughtsPlayer;
 import org10x10.dam.game.Move;
 
@@ -21,6 +22,13 @@ public class AlphaBetaPlayerV0 extends DraughtsPlayer {
     
     private boolean stopped = false;
     
+    private static final int MAX_DEPTH = 100;
+    
+    /** A move buffer for each ply; a search of depth d uses d+2 plies */
+    private final long[][] moveBuffers = new long[MAX_DEPTH + 2][DraughtsState.MAX_MOVES];
+    
+    private final MoveOrderer orderer = new MoveOrderer(MAX_DEPTH + 2);
+    
     @Override
     public void stop() { stopped = true; }
     
@@ -33,9 +41,10 @@ public class AlphaBetaPlayerV0 extends DraughtsPlayer {
         
         // See whether the player plays black or white
         isBlack = moves.get(0).isBlackMove();
+        orderer.newSearch();
         
         // Use iterative deepening
-        for (int d = 3; d < 100; d++) {
+        for (int d = 3; d < MAX_DEPTH; d++) {
             try {
                 bestMove = alphaBetaSearch(s, d);
             } catch (AIStoppedException e) {
@@ -77,38 +86,46 @@ public class AlphaBetaPlayerV0 extends DraughtsPlayer {
     }
     
     private Move alphaBetaSearch(DraughtsState s, int depth) throws AIStoppedException{
-        List<Move> moves = s.getMoves();
+        long[] moves = moveBuffers[0];
+        int n = s.getMoves(moves, 0);
+        orderer.order(s, moves, n, 0, PackedMove.NONE);
         
         int bestValue = Integer.MIN_VALUE;
-        Move bestMove = null;
+        long bestMove = PackedMove.NONE;
         
         // Find the best move
-        for (Move m : moves) {
-            s.doMove(m);
-            int value = alphaBetaMin(s, Integer.MIN_VALUE, Integer.MAX_VALUE, depth);
+        for (int i = 0; i < n; i++) {
+            s.doMove(moves[i]);
+            int value = alphaBetaMin(s, Integer.MIN_VALUE, Integer.MAX_VALUE, depth, 1);
             if (value > bestValue) {
                 bestValue = value;
-                bestMove = m;
+                bestMove = moves[i];
             }
-            s.undoMove(m);
+            s.undoMove(moves[i]);
         }
         
-        return bestMove;
+        return bestMove == PackedMove.NONE ? null : s.toMove(bestMove);
     }
     
     private int alphaBetaMax(DraughtsState s, int alpha, int beta,
-                            int depth) throws AIStoppedException{
+                            int depth, int ply) throws AIStoppedException{
         checkAndThrow();
-        List<Move> moves = s.getMoves();
-        if (depth < 0 || moves.isEmpty()) {
+        if (depth < 0) {
+            return getValue(s);
+        }
+        long[] moves = moveBuffers[ply];
+        int n = s.getMoves(moves, 0);
+        if (n == 0) {
             return getValue(s);
         } else {
-            for (Move m : moves) {
-                s.doMove(m);
-                int min = alphaBetaMin(s, alpha, beta, depth - 1);
+            orderer.order(s, moves, n, ply, PackedMove.NONE);
+            for (int i = 0; i < n; i++) {
+                s.doMove(moves[i]);
+                int min = alphaBetaMin(s, alpha, beta, depth - 1, ply + 1);
                 alpha = (alpha > min ? alpha : min);
-                s.undoMove(m);
+                s.undoMove(moves[i]);
                 if (alpha >= beta) {
+                    orderer.cutoff(moves[i], ply, depth + 1, i);
                     return beta;
                 }
             }
@@ -117,18 +134,24 @@ public class AlphaBetaPlayerV0 extends DraughtsPlayer {
     }
     
     private int alphaBetaMin(DraughtsState s, int alpha, int beta,
-                            int depth) throws AIStoppedException{
+                            int depth, int ply) throws AIStoppedException{
         checkAndThrow();
-        List<Move> moves = s.getMoves();
-        if (depth < 0 || moves.isEmpty()) {
+        if (depth < 0) {
+            return getValue(s);
+        }
+        long[] moves = moveBuffers[ply];
+        int n = s.getMoves(moves, 0);
+        if (n == 0) {
             return getValue(s);
         } else {
-            for (Move m : moves) {
-                s.doMove(m);
-                int max = alphaBetaMax(s, alpha, beta, depth - 1);
+            orderer.order(s, moves, n, ply, PackedMove.NONE);
+            for (int i = 0; i < n; i++) {
+                s.doMove(moves[i]);
+                int max = alphaBetaMax(s, alpha, beta, depth - 1, ply + 1);
                 beta = (beta < max ? beta : max);
-                s.undoMove(m);
+                s.undoMove(moves[i]);
                 if (alpha >= beta) {
+                    orderer.cutoff(moves[i], ply, depth + 1, i);
                     return alpha;
                 }
             } 
@@ -0,0 +1,144 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nl.tue.s2id90.group28;
+
+import nl.tue.s2id90.draughts.DraughtsState;
+
+/**
+ * Evaluates the material on the board. A man is worth 100, plus 3 for every
+ * row it has advanced, or 20 if it is still on its back row; a king is worth
+ * 200, plus 20 if it is on the edge of the board.
+ * <p>
+ * An evaluator reuses an array for the pieces, so it is not thread safe;
+ * every search thread needs its own evaluator.
+ * @author s147569
+ * @author s140511
+ */
+public class Evaluator {
+    
+    /** Value of a won game, for the winner; larger than any material value */
+    public static final int WIN = 1000000;
+    
+    /** Highest value of a single piece */
+    public static final int MAX_PIECE_VALUE = 220;
+    
+    /** Reusable array for the pieces on the board */
+    private final int[] pieces = new int[51];
+    
+    /** Material of both sides, as computed by the last countMaterial */
+    private int whiteValue, blackValue;
+    
+    /**
+     * Computes the material of both sides.
+     * @param s the state
+     * @see #getWhiteValue()
+     * @see #getBlackValue()
+     */
+    public void countMaterial(DraughtsState s) {
+        s.getPieces(pieces);
+        whiteValue = 0;
+        blackValue = 0;
+        //retrieve values of each piece
+        for (int p = 1; p < pieces.length; p++) {
+            switch (pieces[p]) {
+                case DraughtsState.BLACKPIECE:
+                    blackValue += getPieceValue(DraughtsState.BLACKPIECE, getRowNumber(p), false);
+                    break;
+                case DraughtsState.BLACKKING:
+                    blackValue += getPieceValue(getPosition(p), 0, true);
+                    break;
+                case DraughtsState.WHITEPIECE:
+                    whiteValue += getPieceValue(DraughtsState.WHITEPIECE, getRowNumber(p), false);
+                    break;
+                case DraughtsState.WHITEKING:
+                    whiteValue += getPieceValue(getPosition(p), 0, true);
+                    break;
+            }
+        }
+    }
+    
+    /** @return the material of white, as computed by countMaterial */
+    public int getWhiteValue() {
+        return whiteValue;
+    }
+    
+    /** @return the material of black, as computed by countMaterial */
+    public int getBlackValue() {
+        return blackValue;
+    }
+    
+    /**
+     * Evaluates the state {@code s} for the player to move.
+     * @param s the state
+     * @return own material minus the material of the opponent
+     */
+    public int evaluate(DraughtsState s) {
+        countMaterial(s);
+        return s.isWhiteToMove() ? whiteValue - blackValue : blackValue - whiteValue;
+    }
+    
+    /**
+     * Evaluates the row of {@code p}.
+     * @param p
+     * @return the row number of p
+     */
+    private static int getRowNumber(int p){
+        return (int) (p / 5 - 0.1);
+    }
+    
+    /**
+     * Checks whether the piece is on the side or in the middle.
+     * @param p
+     * @return the position of p
+     * @note middle = 0
+     * @note left = 1
+     * @note right = 2
+     * @note top = 3
+     * @note bottom = 4
+     */
+    private static int getPosition(int p){
+        if (p < 6) {
+            return 3;
+        } else if (p > 45) {
+            return 4;
+        } else if (p % 10 == 5){
+            return 2;
+        } else if (p % 10 == 6) {
+            return 1;
+        } else {
+            return 0;
+        }
+    }
+    
+    /**
+     * Evaluates the value of a single piece.
+     * @param position
+     * @param rowNumber
+     * @param isKing
+     * @return value of the piece
+     */
+    private static int getPieceValue(int position_color, int rowNumber, boolean isKing){
+        int value = 100;
+        if (isKing) {
+            value *= 2; //double the value for kings
+            if (position_color > 0) value += 20; //King is on the side
+        } else if (position_color == DraughtsState.BLACKPIECE){ // the piece is black
+            if (rowNumber == 9){ //defensive pieces are worth more
+                value += 20;
+            } else { 
+                value += (9-rowNumber) * 3; //the closer to becoming king, the more worth
+            }
+        } else { // the piece is white
+            if (rowNumber == 0){ //defensive pieces are worth more
+                value += 20;
+            } else { 
+                value += rowNumber * 3; //the closer to becoming king, the more worth
+            }
+        }
+
+        return value;
+    }
+}
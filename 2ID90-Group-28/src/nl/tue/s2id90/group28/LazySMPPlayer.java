@@ -0,0 +1,232 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nl.tue.s2id90.group28;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import nl.tue.s2id90.draughts.DraughtsState;
+import nl.tue.s2id90.draughts.PackedMove;
+import nl.tue.s2id90.draughts.player.DraughtsPlayer;
+import nl.tue.s2id90.game.SearchInfo;
+import org10x10.dam.game.Move;
+
+/**
+ * A player that searches with several threads (lazy SMP). Every thread runs
+ * the same iterative deepening as PVSPlayer, on its own copy of the state,
+ * and they all share one lock-free transposition table. The helper threads
+ * do not split the work: they search the same tree, but half of them one
+ * ply deeper, and each with its own perturbation of the move order. What a
+ * helper finds ends up in the table, where the other threads find it, so
+ * together they reach a depth sooner than one thread alone.
+ * <p>
+ * The main thread, the one that calls getMove, merges the results: it plays
+ * the move of the deepest iteration that any thread completed. stop() stops
+ * all threads; getMove returns after all helpers have stopped.
+ * <p>
+ * Every time a thread completes a deeper iteration than any thread before,
+ * the time since the start of the move is recorded and reported to the
+ * search listener. After a move, the time to each depth is printed, so that
+ * the time to depth with more threads can be compared with one thread.
+ * @author s147569
+ * @author s140511
+ */
+public class LazySMPPlayer extends DraughtsPlayer {
+
+    private final TranspositionTable table;
+
+    /** The searches; the first one is the main search */
+    private final NegamaxSearch[] searches;
+
+    /** Runs the helper searches */
+    private ExecutorService helpers = null;
+
+    /** The deepest completed iteration of any thread, its move and value */
+    private int bestDepth;
+    private long bestMove;
+    private int bestValue;
+
+    /** Start of the current move, as in System.currentTimeMillis() */
+    private long start;
+
+    /** The time since the start at which each depth was first completed, in
+     * ms, indexed by depth */
+    private final long[] depthTimes = new long[NegamaxSearch.MAX_DEPTH];
+
+    /** Value of the last move, for the player that made it */
+    private Integer value = null;
+
+    public LazySMPPlayer() {
+        this(Runtime.getRuntime().availableProcessors(), AlphaBetaPlayer.DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * Creates a player that searches with the given number of threads.
+     * @param threads number of threads, including the main thread
+     * @param tableSize size of the shared transposition table in MB
+     */
+    public LazySMPPlayer(int threads, int tableSize) {
+        if (threads < 1) throw new IllegalArgumentException("threads < 1");
+        table = new TranspositionTable(tableSize);
+        searches = new NegamaxSearch[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new NegamaxSearch(table);
+            searches[i].getOrderer().setPerturbation(i == 0 ? 0 : 0x9E3779B9 * i);
+        }
+    }
+
+    @Override
+    public void stop() {
+        for (NegamaxSearch search : searches) {
+            search.stop();
+        }
+    }
+
+    @Override
+    public Integer getValue() {
+        return value;
+    }
+
+    @Override
+    public String getName() {
+        return super.getName() + " (" + searches.length + " threads)";
+    }
+
+    @Override
+    public Move getMove(DraughtsState s) {
+        table.newSearch();
+        for (NegamaxSearch search : searches) {
+            search.newSearch();
+        }
+
+        // If we are forced to do a certain move, it is useless to search
+        if (s.getMoves().size() == 1) {
+            value = null;
+            return s.getMoves().get(0);
+        }
+
+        synchronized (this) {
+            bestDepth = 0;
+            bestMove = PackedMove.NONE;
+            start = System.currentTimeMillis();
+        }
+
+        // Start the helpers, each on its own copy of the state; the copies
+        // know the earlier positions of the game, for the draw rules
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 1; i < searches.length; i++) {
+            final NegamaxSearch search = searches[i];
+            final DraughtsState copy = s.clone();
+            final int firstDepth = 1 + i % 2;
+            futures.add(getHelpers().submit(() -> deepen(search, copy, firstDepth)));
+        }
+
+        // The main search, in this thread
+        deepen(searches[0], s, 1);
+
+        // Stop the helpers, and wait until they have
+        stop();
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+
+        long nodes = getNodes();
+        long time = Math.max(1, System.currentTimeMillis() - start);
+        System.out.println("Depth level " + bestDepth + " completed, "
+                + nodes + " nodes, " + (1000 * nodes / time) + " nodes/s, "
+                + searches.length + " threads.");
+        synchronized (this) {
+            System.out.println("Time to depth 1-" + bestDepth + " in ms: "
+                    + Arrays.toString(getDepthTimes()));
+            value = bestValue;
+            return bestMove == PackedMove.NONE ? s.getMoves().get(0) : s.toMove(bestMove);
+        }
+    }
+
+    /**
+     * Iterative deepening, until the search is stopped or the game is won or
+     * lost.
+     * @param search the search of this thread
+     * @param s the state of this thread
+     * @param firstDepth depth of the first iteration
+     */
+    private void deepen(NegamaxSearch search, DraughtsState s, int firstDepth) {
+        int score = 0;
+        try {
+            for (int depth = firstDepth; depth < NegamaxSearch.MAX_DEPTH; depth++) {
+                score = search.aspirationSearch(s, depth, score);
+                report(search, s, depth, score);
+
+                // A won or lost game does not get any better by searching deeper
+                if (Math.abs(score) > Evaluator.WIN - NegamaxSearch.MAX_DEPTH) {
+                    stop();
+                    return;
+                }
+            }
+        } catch (AIStoppedException e) {
+            // stopped
+        }
+    }
+
+    /**
+     * Keeps the result of a completed iteration if it is the deepest, records
+     * the time to its depth, and reports it to the search listener.
+     * @param search the search of the thread that completed the iteration
+     * @param s the state of that thread
+     */
+    private synchronized void report(NegamaxSearch search, DraughtsState s,
+            int depth, int value) {
+        long move = search.getBestMove();
+        if (depth > bestDepth && move != PackedMove.NONE) {
+            long time = System.currentTimeMillis() - start;
+            for (int d = bestDepth + 1; d <= depth; d++) {
+                // a helper that starts one ply deeper can skip a depth
+                depthTimes[d] = time;
+            }
+            bestDepth = depth;
+            bestMove = move;
+            bestValue = value;
+            publish(new SearchInfo<>(depth, value, getNodes(), time,
+                    search.getPrincipalVariation(s, depth), table.getHashFull()));
+        }
+    }
+
+    /** @return the times at which depth 1, 2, ... of the last move were
+     * first completed, in ms since the start of the move */
+    synchronized long[] getDepthTimes() {
+        return Arrays.copyOfRange(depthTimes, 1, bestDepth + 1);
+    }
+
+    /** @return the number of nodes of all threads in the current or last
+     * move; while they search, an estimate */
+    private long getNodes() {
+        long nodes = 0;
+        for (NegamaxSearch search : searches) {
+            nodes += search.getNodes();
+        }
+        return nodes;
+    }
+
+    /** @return the executor of the helper threads, created on first use */
+    private ExecutorService getHelpers() {
+        if (helpers == null) {
+            helpers = Executors.newFixedThreadPool(searches.length - 1, r -> {
+                Thread t = new Thread(r, "LazySMP helper");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return helpers;
+    }
+}
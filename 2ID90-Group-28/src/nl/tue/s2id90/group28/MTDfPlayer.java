@@ -0,0 +1,133 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nl.tue.s2id90.group28;
+
+import java.util.Arrays;
+import nl.tue.s2id90.draughts.DraughtsState;
+import nl.tue.s2id90.draughts.PackedMove;
+import nl.tue.s2id90.draughts.player.DraughtsPlayer;
+import org10x10.dam.game.Move;
+
+/**
+ * A player that searches with iterative deepening and MTD(f): every
+ * iteration is a series of null window searches (see NegamaxSearch), each
+ * of which tells whether the value is above or below a single test value.
+ * The bounds converge to the value; the first test value is the value of
+ * the previous iteration. The passes search the same tree again and again,
+ * so MTD(f) relies on the transposition table to make a pass cheap.
+ * <p>
+ * The node counts of the passes of the last completed iteration are
+ * printed with the reached depth.
+ * @author s147569
+ * @author s140511
+ */
+public class MTDfPlayer extends DraughtsPlayer {
+
+    /** Maximum number of passes that are reported */
+    private static final int MAX_PASSES = 64;
+
+    private final TranspositionTable table;
+
+    private final NegamaxSearch search;
+
+    /** Value of the last move, for the player that made it */
+    private Integer value = null;
+
+    /** Nodes per pass of the current iteration and of the last completed one */
+    private final long[] passNodes = new long[MAX_PASSES];
+    private long[] lastPassNodes = new long[0];
+    private int passes;
+
+    /** Best move of the last pass that failed high */
+    private long searchedMove;
+
+    public MTDfPlayer() {
+        this(AlphaBetaPlayer.DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * Creates a player with a transposition table of the given size.
+     * @param tableSize size of the transposition table in MB
+     */
+    public MTDfPlayer(int tableSize) {
+        table = new TranspositionTable(tableSize);
+        search = new NegamaxSearch(table);
+    }
+
+    @Override
+    public void stop() { search.stop(); }
+
+    @Override
+    public Integer getValue() {
+        return value;
+    }
+
+    @Override
+    public Move getMove(DraughtsState s) {
+        table.newSearch();
+        search.newSearch();
+        lastPassNodes = new long[0];
+
+        // If we are forced to do a certain move, it is useless to search
+        if (s.getMoves().size() == 1) {
+            value = null;
+            return s.getMoves().get(0);
+        }
+
+        long bestMove = PackedMove.NONE;
+        int guess = 0;
+        int depth;
+        for (depth = 1; depth < NegamaxSearch.MAX_DEPTH; depth++) {
+            try {
+                guess = mtdf(s, depth, guess);
+                bestMove = searchedMove;
+                value = guess;
+                lastPassNodes = Arrays.copyOf(passNodes, Math.min(passes, MAX_PASSES));
+            } catch (AIStoppedException e) {
+                break;
+            }
+
+            // A won or lost game does not get any better by searching deeper
+            if (Math.abs(guess) > Evaluator.WIN - NegamaxSearch.MAX_DEPTH) {
+                break;
+            }
+        }
+        System.out.println("Depth level " + depth + " reached, "
+                + search.getNodes() + " nodes, passes of depth " + (depth - 1)
+                + ": " + Arrays.toString(lastPassNodes));
+        return bestMove == PackedMove.NONE ? s.getMoves().get(0) : s.toMove(bestMove);
+    }
+
+    /**
+     * Finds the value of state s at the given depth with null window
+     * searches, starting at guess.
+     * @return the value of s
+     * @throws AIStoppedException
+     */
+    private int mtdf(DraughtsState s, int depth, int guess) throws AIStoppedException {
+        int g = guess;
+        int lower = -NegamaxSearch.INFINITY, upper = NegamaxSearch.INFINITY;
+        searchedMove = PackedMove.NONE;
+        passes = 0;
+        while (lower < upper) {
+            int beta = (g == lower ? g + 1 : g);
+            long nodes = search.getNodes();
+            g = search.search(s, depth, beta - 1, beta);
+            if (passes < MAX_PASSES) {
+                passNodes[passes] = search.getNodes() - nodes;
+            }
+            passes++;
+            if (g < beta) {
+                upper = g;
+            } else {
+                // only a pass that fails high proves its move
+                lower = g;
+                searchedMove = search.getBestMove();
+            }
+        }
+        return g;
+    }
+}
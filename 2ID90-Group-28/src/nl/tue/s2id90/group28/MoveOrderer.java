@@ -0,0 +1,221 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nl.tue.s2id90.group28;
+
+import nl.tue.s2id90.draughts.DraughtsState;
+import nl.tue.s2id90.draughts.PackedMove;
+
+/**
+ * Orders the moves of a node so that alpha-beta finds a cutoff as early as
+ * possible. The moves are sorted in place, best first:
+ * <ol>
+ * <li>the hash move: the best move of an earlier search of the position;</li>
+ * <li>captures, the ones that capture the most kings or promote first;</li>
+ * <li>the two killer moves of the ply: quiet moves that recently caused a
+ * cutoff at the same ply;</li>
+ * <li>the other quiet moves, by their history score: how often, and how deep,
+ * a move from the same begin field to the same end field caused a cutoff.</li>
+ * </ol>
+ * Capturing is mandatory and all legal captures capture the same number of
+ * pieces (the maximum capture rule), so captures are ordered by the kings
+ * they capture rather than by their size.
+ * <p>
+ * The orderer does not allocate memory while ordering. It is not thread safe;
+ * every search thread needs its own orderer.
+ * @author s147569
+ * @author s140511
+ */
+public class MoveOrderer {
+
+    /** Score of the hash move */
+    private static final long HASH_SCORE = Long.MAX_VALUE;
+
+    /** Base score of a capture */
+    private static final long CAPTURE_SCORE = 1L << 50;
+
+    /** Score of the first and second killer move */
+    private static final long KILLER_SCORE = 1L << 40;
+
+    /** History scores are halved when one of them reaches this value, so that
+     * they stay below the killer scores */
+    private static final long HISTORY_LIMIT = 1L << 32;
+
+    /** Two killer moves per ply, the most recent first */
+    private final long[][] killers;
+
+    /** History score per begin and end field */
+    private final long[][] history = new long[51][51];
+
+    /** Scores of the moves being ordered, per ply */
+    private final long[][] scores;
+
+    /** Reusable array for the captured fields of a move */
+    private final int[] captured = new int[25];
+
+    /** State of the random perturbation of the quiet moves; 0 if off */
+    private int noise = 0;
+
+    /** Number of nodes with a cutoff, and with a cutoff by the first move */
+    private long cutoffs, firstMoveCutoffs;
+
+    /**
+     * Creates an orderer for searches of at most maxPly plies.
+     * @param maxPly maximal ply
+     */
+    public MoveOrderer(int maxPly) {
+        killers = new long[maxPly][2];
+        scores = new long[maxPly][DraughtsState.MAX_MOVES];
+    }
+
+    /**
+     * Sorts the first n moves, best first.
+     * @param s the state the moves belong to
+     * @param moves packed moves of s
+     * @param n number of moves
+     * @param ply distance to the root
+     * @param hashMove best move from the transposition table, or
+     * PackedMove.NONE
+     */
+    public void order(DraughtsState s, long[] moves, int n, int ply, long hashMove) {
+        long[] score = scores[ply];
+        long[] killer = killers[ply];
+        for (int i = 0; i < n; i++) {
+            long m = moves[i];
+            if (m == hashMove) {
+                score[i] = HASH_SCORE;
+            } else if (PackedMove.isCapture(m)) {
+                score[i] = CAPTURE_SCORE + getCaptureValue(s, m);
+            } else if (m == killer[0]) {
+                score[i] = KILLER_SCORE + 1;
+            } else if (m == killer[1]) {
+                score[i] = KILLER_SCORE;
+            } else {
+                score[i] = history[PackedMove.getBeginField(m)][PackedMove.getEndField(m)];
+                if (noise != 0) {
+                    score[i] += nextNoise();
+                }
+            }
+        }
+
+        // Insertion sort: there are few moves, and the order of moves with
+        // equal scores is kept
+        for (int i = 1; i < n; i++) {
+            long m = moves[i], v = score[i];
+            int j = i - 1;
+            while (j >= 0 && score[j] < v) {
+                moves[j + 1] = moves[j];
+                score[j + 1] = score[j];
+                j--;
+            }
+            moves[j + 1] = m;
+            score[j + 1] = v;
+        }
+    }
+
+    /**
+     * Perturbs the order of the quiet moves with small random history scores,
+     * so that searches with a different seed search their trees in a
+     * different order. Used by the helper threads of LazySMPPlayer.
+     * @param seed seed of the perturbation; 0 turns it off
+     */
+    public void setPerturbation(int seed) {
+        noise = seed;
+    }
+
+    /** @return the next small random score, from a xorshift generator */
+    private int nextNoise() {
+        noise ^= noise << 13;
+        noise ^= noise >>> 17;
+        noise ^= noise << 5;
+        return noise & 0xF;
+    }
+
+    /**
+     * Evaluates the captured pieces of a capture.
+     * @return twice the number of captured kings, plus one for a promotion
+     */
+    private int getCaptureValue(DraughtsState s, long m) {
+        int value = PackedMove.isPromotion(m) ? 1 : 0;
+        int n = PackedMove.getCapturedFields(m, captured, 0);
+        for (int i = 0; i < n; i++) {
+            int piece = s.getPiece(captured[i]);
+            if (piece == DraughtsState.WHITEKING || piece == DraughtsState.BLACKKING) {
+                value += 2;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Records that a move caused a cutoff.
+     * @param m the move
+     * @param ply distance to the root
+     * @param depth remaining depth of the node
+     * @param index position of m in the ordered moves
+     */
+    public void cutoff(long m, int ply, int depth, int index) {
+        cutoffs++;
+        if (index == 0) {
+            firstMoveCutoffs++;
+        }
+        if (PackedMove.isCapture(m)) {
+            return;
+        }
+        long[] killer = killers[ply];
+        if (killer[0] != m) {
+            killer[1] = killer[0];
+            killer[0] = m;
+        }
+        long[] h = history[PackedMove.getBeginField(m)];
+        int to = PackedMove.getEndField(m);
+        h[to] += (long) depth * depth;
+        if (h[to] >= HISTORY_LIMIT) {
+            age();
+        }
+    }
+
+    /**
+     * Prepares for the search of a new move: the killer moves are removed, and
+     * the history scores are halved, so that recent cutoffs count more.
+     */
+    public void newSearch() {
+        for (long[] killer : killers) {
+            killer[0] = killer[1] = PackedMove.NONE;
+        }
+        age();
+    }
+
+    /** Halves all history scores */
+    private void age() {
+        for (long[] h : history) {
+            for (int to = 0; to < h.length; to++) {
+                h[to] /= 2;
+            }
+        }
+    }
+
+    /** @return the number of nodes with a cutoff since the last reset */
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /** @return the number of nodes in which the first move caused the
+     * cutoff, since the last reset */
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    /** @return the fraction of the cutoffs that was caused by the first move;
+     * the closer to 1, the better the ordering */
+    public double getFirstMoveCutoffRate() {
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    /** Resets the cutoff statistics */
+    public void resetStatistics() {
+        cutoffs = firstMoveCutoffs = 0;
+    }
+}
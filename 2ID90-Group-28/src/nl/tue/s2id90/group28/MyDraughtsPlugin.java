@@ -17,11 +17,14 @@ import nl.tue.s2id90.draughts.DraughtsPlugin;
 @PluginImplementation
 public class MyDraughtsPlugin extends DraughtsPlayerProvider implements DraughtsPlugin {
     public MyDraughtsPlugin() {
-        // make two players available to the AICompetition tool
+        // make our players available to the AICompetition tool; the
+        // transposition table of a player is only allocated when it is
+        // asked for its first move
         // During the final competition you should make only your 
         // best player available. For testing it might be handy
         // to make more than one player available.
         super(new UninformedPlayer(), new OptimisticPlayer(), new StupidPlayer()
-                , new AlphaBetaPlayerV0(), new AlphaBetaPlayer(), new AlphaBetaPlayer());
+                , new AlphaBetaPlayerV0(), new AlphaBetaPlayer(), new AlphaBetaPlayer()
+                , new PVSPlayer(), new MTDfPlayer(), new LazySMPPlayer(), new YBWCPlayer());
     }
 }
@@ -0,0 +1,529 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nl.tue.s2id90.group28;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import nl.tue.s2id90.draughts.DraughtsState;
+import nl.tue.s2id90.draughts.PackedMove;
+import nl.tue.s2id90.game.Game.Result;
+import org10x10.dam.game.Move;
+
+/**
+ * A fixed-depth principal variation search (NegaScout) of a draughts state,
+ * with a transposition table, move ordering and a quiescence search of the
+ * captures, as in AlphaBetaPlayer. Unlike AlphaBetaPlayer, it scores positions
+ * for the player to move (negamax) with integer values: the material
+ * difference of the Evaluator, 0 for a draw, and WIN minus the distance in
+ * plies for a won game.
+ * <p>
+ * The first move of a node is searched with the full window; the other moves
+ * with a null window, which only tells whether they are better than the best
+ * move so far. Only a move that is better is searched again with the full
+ * window. With a good move ordering that rarely happens.
+ * <p>
+ * The search is the building block of the players that drive it: with
+ * aspiration windows (PVSPlayer), with null windows only (MTDfPlayer), with
+ * several searches on one shared table in parallel (LazySMPPlayer), or as
+ * the sequential search of the subtrees of a parallel search (YBWCPlayer). A
+ * search is not thread safe, except for stop(); every thread needs its own
+ * search, but searches can share a transposition table.
+ * @author s147569
+ * @author s140511
+ */
+public class NegamaxSearch {
+
+    /** Larger than any score */
+    public static final int INFINITY = Evaluator.WIN + 1;
+
+    /** Value of a drawn game */
+    public static final int DRAW = 0;
+
+    /** Maximum depth of a search */
+    public static final int MAX_DEPTH = 100;
+
+    /** Initial half width of the aspiration window: a quarter of a man */
+    private static final int ASPIRATION_WINDOW = 25;
+
+    /** Half width from which on the full window is used */
+    private static final int MAX_ASPIRATION_WINDOW = 4 * Evaluator.MAX_PIECE_VALUE;
+
+    /** Maximum number of plies of the quiescence search */
+    private static final int MAX_QUIESCENCE_DEPTH = 40;
+
+    /** Maximum number of nodes of the quiescence search of a leaf */
+    private static final int QUIESCENCE_BUDGET = 2000;
+
+    /** Safety margin of the delta pruning, in piece value units */
+    private static final int DELTA_MARGIN = 100;
+
+    /** The results of earlier searches, possibly shared with other searches */
+    private final TranspositionTable table;
+
+    /** Orders the moves of each node */
+    private final MoveOrderer orderer = new MoveOrderer(MAX_DEPTH);
+
+    private final Evaluator evaluator = new Evaluator();
+
+    /** A move buffer for each ply */
+    private final long[][] moveBuffers
+            = new long[MAX_DEPTH + MAX_QUIESCENCE_DEPTH][DraughtsState.MAX_MOVES];
+
+    /** Reusable array for an entry of the transposition table */
+    private final long[] entry = new long[3];
+
+    /** Whether stop() has been called since the last newSearch() */
+    private volatile boolean stopped = false;
+
+    /** Maximum number of nodes, and deadline as in System.currentTimeMillis(),
+     * of the searches since the last newSearch() */
+    private volatile long nodeLimit = Long.MAX_VALUE, deadline = Long.MAX_VALUE;
+
+    /** Condition that aborts the current searchNode; null if none */
+    private BooleanSupplier abort = null;
+
+    /** Nodes left in the quiescence search of the current leaf */
+    private int quiescenceNodes;
+
+    /** Number of nodes searched since the last newSearch() */
+    private long nodes;
+
+    /** Best move of the last completed root search */
+    private long bestMove = PackedMove.NONE;
+
+    /** Best move of the current iteration so far whose value is above the
+     * window, so that it is proven better than the moves before it */
+    private long provenMove = PackedMove.NONE;
+
+    /**
+     * Creates a search.
+     * @param table transposition table, possibly shared with other searches
+     */
+    public NegamaxSearch(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /** Prepares for the search of a new move */
+    public void newSearch() {
+        stopped = false;
+        nodeLimit = deadline = Long.MAX_VALUE;
+        nodes = 0;
+        bestMove = provenMove = PackedMove.NONE;
+        orderer.newSearch();
+        orderer.resetStatistics();
+    }
+
+    /** Makes the running search, and the next ones until newSearch(), throw
+     * an AIStoppedException. Can be called from any thread. */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Limits the searches until the next newSearch(): when a limit is
+     * reached, they throw an AIStoppedException, as after stop(). Can be
+     * called from any thread.
+     * @param nodeLimit maximum number of nodes since newSearch()
+     * @param deadline deadline as in System.currentTimeMillis()
+     */
+    public void setLimits(long nodeLimit, long deadline) {
+        this.nodeLimit = nodeLimit;
+        this.deadline = deadline;
+    }
+
+    /** @return whether stop() has been called since the last newSearch() */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /** @return the number of nodes searched since the last newSearch() */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /** @return the best move of the last completed search with a value
+     * above alpha, packed; PackedMove.NONE if there is none */
+    public long getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * @return the best move of the current or last aspirationSearch that has
+     * a value above alpha in one of its root searches, also if the iteration
+     * was stopped; PackedMove.NONE if there is none. The first move of a root
+     * search is the best move of the previous iteration, also in the search
+     * again after a fail low, since a root search that fails low does not
+     * change the best move; so this move is at least as good as that one.
+     */
+    public long getProvenMove() {
+        return provenMove;
+    }
+
+    /**
+     * Finds the principal variation of s: the best move of the last root
+     * search, followed by the best moves in the table.
+     * @param s the root state, unchanged afterwards
+     * @param maxLength maximum length of the variation
+     * @return the moves of the variation
+     */
+    public List<Move> getPrincipalVariation(DraughtsState s, int maxLength) {
+        List<Move> pv = new ArrayList<>();
+        long m = bestMove;
+        while (m != PackedMove.NONE && pv.size() < maxLength) {
+            pv.add(s.toMove(m));
+            s.doMove(m);
+            m = s.isRepetition() ? PackedMove.NONE : getHashMove(s);
+        }
+        s.undo(pv.size());
+        return pv;
+    }
+
+    /**
+     * @return the best move of s in the table, packed, if it is a legal move
+     * of s; the table may hold a move of another position with the same key.
+     * PackedMove.NONE if there is none.
+     */
+    public long getHashMove(DraughtsState s) {
+        if (!table.probe(s.getHash(), entry)) {
+            return PackedMove.NONE;
+        }
+        long m = TranspositionTable.getMove(entry);
+        long[] moves = moveBuffers[0];
+        int n = s.getMoves(moves, 0);
+        for (int i = 0; i < n; i++) {
+            if (moves[i] == m) return m;
+        }
+        return PackedMove.NONE;
+    }
+
+    /** @return the move orderer, for its statistics */
+    public MoveOrderer getOrderer() {
+        return orderer;
+    }
+
+    /** @return the transposition table */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Searches state s to the given depth, within the window alpha..beta.
+     * The result is fail-soft: a value v &le; alpha is an upper bound of the
+     * value of s, a value v &ge; beta a lower bound. The best move is
+     * available from getBestMove() afterwards, unless s has no moves or the
+     * value is at most alpha; then the best move of the previous search is
+     * kept, and it is searched first when s is searched again.
+     * @param s the state, unchanged afterwards, also if the search is stopped
+     * @param depth remaining depth, at least 1
+     * @param alpha lower bound of the window
+     * @param beta upper bound of the window
+     * @return value of s for the player to move
+     * @throws AIStoppedException if stop() was called
+     */
+    public int search(DraughtsState s, int depth, int alpha, int beta)
+            throws AIStoppedException {
+        checkAndThrow();
+        nodes++;
+        long[] moves = moveBuffers[0];
+        int n = s.getMoves(moves, 0);
+        if (n == 0) {
+            return -Evaluator.WIN;
+        }
+
+        // Search the best move of the previous iteration first
+        long key = s.getHash();
+        long first = bestMove;
+        if (first == PackedMove.NONE && table.probe(key, entry)) {
+            first = TranspositionTable.getMove(entry);
+        }
+        orderer.order(s, moves, n, 0, first);
+
+        int alphaOrig = alpha;
+        int best = -INFINITY;
+        long move = PackedMove.NONE;
+        int ply = s.getPly();
+        try {
+            for (int i = 0; i < n && alpha < beta; i++) {
+                s.doMove(moves[i]);
+                int value = searchChild(s, alpha, beta, depth - 1, 1, i == 0);
+                s.undoMove(moves[i]);
+                if (value > best) {
+                    best = value;
+                    move = moves[i];
+                    alpha = Math.max(alpha, value);
+                    if (value > alphaOrig) {
+                        provenMove = move;
+                    }
+                }
+            }
+        } catch (AIStoppedException e) {
+            // undo the moves of the interrupted search
+            s.undo(s.getPly() - ply);
+            throw e;
+        }
+        store(key, move, best, 0, depth, alphaOrig, beta);
+        if (best > alphaOrig) {
+            // after a fail low, every move is at most alpha, so the move that
+            // happens to be best is not better than the best move so far
+            bestMove = move;
+        }
+        return best;
+    }
+
+    /**
+     * Searches state s to the given depth with an aspiration window around
+     * guess, the value of the previous iteration: if the value falls outside
+     * the window, the window is widened geometrically and s is searched
+     * again, until the value is inside the window or the window is full.
+     * The first iteration is searched with the full window.
+     * @param s the state, unchanged afterwards
+     * @param depth remaining depth, at least 1
+     * @param guess expected value of s
+     * @return the value of s
+     * @throws AIStoppedException if stop() was called
+     */
+    public int aspirationSearch(DraughtsState s, int depth, int guess)
+            throws AIStoppedException {
+        provenMove = PackedMove.NONE;
+        if (depth == 1) {
+            return search(s, depth, -INFINITY, INFINITY);
+        }
+        int window = ASPIRATION_WINDOW;
+        int alpha = guess - window, beta = guess + window;
+        while (true) {
+            int v = search(s, depth, alpha, beta);
+            if (v > alpha && v < beta) {
+                return v;
+            }
+            window *= 2;
+            if (v <= alpha) {
+                alpha = window > MAX_ASPIRATION_WINDOW ? -INFINITY
+                        : Math.max(guess - window, -INFINITY);
+            } else {
+                beta = window > MAX_ASPIRATION_WINDOW ? INFINITY
+                        : Math.min(guess + window, INFINITY);
+            }
+            if (alpha == -INFINITY && beta == INFINITY) {
+                return search(s, depth, alpha, beta);
+            }
+        }
+    }
+
+    /**
+     * Searches a node of a larger search, for instance a subtree of a
+     * parallel search, within the window alpha..beta. Unlike search(), the
+     * node is not a root: a repetition is a draw, and a result from the
+     * table is used.
+     * @param s the state, unchanged afterwards, also if the search is stopped
+     * @param depth remaining depth
+     * @param ply distance of s to the root of the larger search
+     * @param abort condition that is checked regularly; when it holds, the
+     * search is aborted like by stop()
+     * @return fail-soft value of s for the player to move
+     * @throws AIStoppedException if stop() was called or abort holds
+     */
+    public int searchNode(DraughtsState s, int depth, int alpha, int beta, int ply,
+            BooleanSupplier abort) throws AIStoppedException {
+        this.abort = abort;
+        int start = s.getPly();
+        try {
+            return negamax(s, alpha, beta, depth, ply);
+        } catch (AIStoppedException e) {
+            s.undo(s.getPly() - start);
+            throw e;
+        } finally {
+            this.abort = null;
+        }
+    }
+
+    /**
+     * Searches a child: the first child with the full window, the others
+     * with a null window first.
+     * @return value of the child, for the player to move in its parent
+     */
+    private int searchChild(DraughtsState s, int alpha, int beta, int depth,
+            int ply, boolean first) throws AIStoppedException {
+        if (first || beta - alpha == 1) {
+            return -negamax(s, -beta, -alpha, depth, ply);
+        }
+        int value = -negamax(s, -alpha - 1, -alpha, depth, ply);
+        if (value > alpha && value < beta) {
+            // better than the best move so far: find out how much
+            value = -negamax(s, -beta, -alpha, depth, ply);
+        }
+        return value;
+    }
+
+    private int negamax(DraughtsState s, int alpha, int beta, int depth, int ply)
+            throws AIStoppedException {
+        checkAndThrow();
+
+        // A repeated position can be repeated again, so it is a draw
+        if (s.isRepetition()) {
+            nodes++;
+            return DRAW;
+        }
+        if (depth <= 0 || ply >= MAX_DEPTH) {
+            quiescenceNodes = QUIESCENCE_BUDGET;
+            return quiescence(s, alpha, beta, ply);
+        }
+        nodes++;
+
+        // Use the result of an earlier search of this position
+        long key = s.getHash();
+        long hashMove = PackedMove.NONE;
+        if (table.probe(key, entry)) {
+            hashMove = TranspositionTable.getMove(entry);
+            if (TranspositionTable.getDepth(entry) >= depth) {
+                int score = fromTable((int) TranspositionTable.getScore(entry), ply);
+                switch (TranspositionTable.getBound(entry)) {
+                    case TranspositionTable.EXACT:
+                        return score;
+                    case TranspositionTable.LOWER:
+                        if (score >= beta) return score;
+                        break;
+                    default:
+                        if (score <= alpha) return score;
+                }
+            }
+        }
+
+        long[] moves = moveBuffers[ply];
+        int n = s.getMoves(moves, 0);
+        if (n == 0) {
+            return -Evaluator.WIN + ply;
+        }
+        if (s.isDraw()) {
+            return DRAW;
+        }
+        orderer.order(s, moves, n, ply, hashMove);
+
+        int alphaOrig = alpha;
+        int best = -INFINITY;
+        long move = PackedMove.NONE;
+        for (int i = 0; i < n; i++) {
+            s.doMove(moves[i]);
+            int value = searchChild(s, alpha, beta, depth - 1, ply + 1, i == 0);
+            s.undoMove(moves[i]);
+            if (value > best) {
+                best = value;
+                move = moves[i];
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        orderer.cutoff(moves[i], ply, depth, i);
+                        break;
+                    }
+                }
+            }
+        }
+        store(key, move, best, ply, depth, alphaOrig, beta);
+        return best;
+    }
+
+    /**
+     * Searches only the captures, until the position is quiet. Capturing is
+     * mandatory, so a position with a capture can not be evaluated as it is
+     * (no stand-pat). If even winning the captured pieces without recapture
+     * can not raise the value above alpha, the captures are not searched
+     * (delta pruning).
+     */
+    private int quiescence(DraughtsState s, int alpha, int beta, int ply)
+            throws AIStoppedException {
+        checkAndThrow();
+        nodes++;
+        if (!s.hasCaptures() || quiescenceNodes <= 0 || ply >= moveBuffers.length) {
+            if (s.isEndState()) {
+                return s.getResult() == Result.DRAW ? DRAW : -Evaluator.WIN + ply;
+            }
+            return evaluator.evaluate(s);
+        }
+        quiescenceNodes--;
+
+        long[] moves = moveBuffers[ply];
+        int n = s.getCaptures(moves, 0);
+        int optimistic = evaluator.evaluate(s) + DELTA_MARGIN
+                + PackedMove.getCaptureCount(moves[0]) * Evaluator.MAX_PIECE_VALUE;
+        if (optimistic <= alpha) {
+            return optimistic;
+        }
+        int best = -INFINITY;
+        for (int i = 0; i < n; i++) {
+            s.doMove(moves[i]);
+            int value = -quiescence(s, -beta, -alpha, ply + 1);
+            s.undoMove(moves[i]);
+            if (value > best) {
+                best = value;
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Stores a fail-soft result in the table. If no move reached alpha, the
+     * best move is no better than the others, so the move that is already in
+     * the table is kept.
+     */
+    void store(long key, long move, int value, int ply, int depth,
+            int alpha, int beta) {
+        int bound = bound(value, alpha, beta);
+        table.store(key, bound == TranspositionTable.UPPER ? PackedMove.NONE : move,
+                toTable(value, ply), depth, bound);
+    }
+
+    /** @return the bound type of a fail-soft result */
+    static int bound(int value, int alpha, int beta) {
+        if (value >= beta) {
+            return TranspositionTable.LOWER;
+        } else if (value > alpha) {
+            return TranspositionTable.EXACT;
+        } else {
+            return TranspositionTable.UPPER;
+        }
+    }
+
+    /** @return the score of a won or lost game as the distance to the end of
+     * the game from the node at the given ply, instead of from the root, so
+     * that it can be used at any ply */
+    static int toTable(int score, int ply) {
+        if (score > Evaluator.WIN - 2 * MAX_DEPTH) {
+            return score + ply;
+        } else if (score < -Evaluator.WIN + 2 * MAX_DEPTH) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /** @return inverse of toTable */
+    static int fromTable(int score, int ply) {
+        if (score > Evaluator.WIN - 2 * MAX_DEPTH) {
+            return score - ply;
+        } else if (score < -Evaluator.WIN + 2 * MAX_DEPTH) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Checks whether the search has been stopped.
+     * @throws AIStoppedException
+     */
+    private void checkAndThrow() throws AIStoppedException {
+        if (stopped || nodes >= nodeLimit
+                || (nodes & 0xFF) == 0
+                        && (deadline != Long.MAX_VALUE && System.currentTimeMillis() >= deadline
+                        || abort != null && abort.getAsBoolean())) {
+            throw new AIStoppedException();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nl.tue.s2id90.group28;
+
+import nl.tue.s2id90.draughts.DraughtsState;
+import nl.tue.s2id90.draughts.PackedMove;
+import nl.tue.s2id90.draughts.player.DraughtsPlayer;
+import nl.tue.s2id90.game.PonderingPlayer;
+import nl.tue.s2id90.game.SearchInfo;
+import nl.tue.s2id90.game.SearchLimits;
+import org10x10.dam.game.Move;
+
+/**
+ * A player that searches with iterative deepening and a principal variation
+ * search (see NegamaxSearch). Each iteration starts with an aspiration window
+ * around the value of the previous iteration; if the value falls outside the
+ * window, the window is widened geometrically and the iteration is searched
+ * again, see NegamaxSearch#aspirationSearch.
+ * <p>
+ * A TimeManager decides whether the next iteration is started: it is
+ * skipped when it is not predicted to finish in the time of the move. When
+ * an iteration is stopped, the best move it has proven so far is played.
+ * <p>
+ * The player is a LimitedPlayer: the framework tells it the deadline of a
+ * move, which becomes the budget of the TimeManager, and the player reports
+ * every completed iteration. Without limits, it learns the budget from
+ * stop().
+ * <p>
+ * The player ponders: after a move, it searches the position after the reply
+ * that it found in the table. On a ponder hit, the search goes on with the
+ * table it filled while pondering, and the time spent pondering comes on top
+ * of the budget of the move.
+ * @author s147569
+ * @author s140511
+ */
+public class PVSPlayer extends DraughtsPlayer
+        implements PonderingPlayer<Move, DraughtsState> {
+
+    private final TranspositionTable table;
+
+    private final NegamaxSearch search;
+
+    /** Decides whether another iteration fits in the time of the move; a
+     * drop of half a man counts as a score drop */
+    private final TimeManager timeManager = new TimeManager(50);
+
+    /** Value of the last move, for the player that made it */
+    private Integer value = null;
+
+    /** The expected reply to the last move; null if unknown */
+    private Move ponderMove = null;
+
+    /** Whether the player ponders, from getPonderMove() until the end of
+     * ponder() */
+    private volatile boolean pondering = false;
+
+    /** Whether stop() has been called since getPonderMove(); it may be
+     * called before the ponder search starts */
+    private volatile boolean ponderStopped = false;
+
+    /** The limits of the move after a ponder hit; null before */
+    private volatile SearchLimits ponderLimits = null;
+
+    public PVSPlayer() {
+        this(AlphaBetaPlayer.DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * Creates a player with a transposition table of the given size.
+     * @param tableSize size of the transposition table in MB
+     */
+    public PVSPlayer(int tableSize) {
+        table = new TranspositionTable(tableSize);
+        search = new NegamaxSearch(table);
+    }
+
+    @Override
+    public void stop() {
+        if (pondering) {
+            ponderStopped = true;
+        } else {
+            timeManager.stopped();
+        }
+        search.stop();
+    }
+
+    @Override
+    public Integer getValue() {
+        return value;
+    }
+
+    @Override
+    public Move getMove(DraughtsState s) {
+        return getMove(s, null);
+    }
+
+    /**
+     * Searches s within the given limits.
+     * @param limits the limits; null if unknown, then the time manager uses
+     * the budget it learned
+     */
+    @Override
+    public Move getMove(DraughtsState s, SearchLimits limits) {
+        pondering = false;
+        return search(s, limits, false);
+    }
+
+    @Override
+    public Move getPonderMove() {
+        ponderStopped = false;
+        ponderLimits = null;
+        pondering = (ponderMove != null);
+        return ponderMove;
+    }
+
+    @Override
+    public Move ponder(DraughtsState s) {
+        try {
+            return search(s, SearchLimits.infinite(), true);
+        } finally {
+            pondering = false;
+        }
+    }
+
+    @Override
+    public void ponderHit(SearchLimits limits) {
+        ponderLimits = limits;
+        search.setLimits(limits.getNodes(), limits.getDeadline());
+    }
+
+    /**
+     * Searches s with iterative deepening.
+     * @param limits the limits; null if unknown
+     * @param ponder whether this is a ponder search, which is limited by
+     * the limits of ponderHit() instead
+     */
+    private Move search(DraughtsState s, SearchLimits limits, boolean ponder) {
+        table.newSearch();
+        search.newSearch();
+        int maxDepth = NegamaxSearch.MAX_DEPTH - 1;
+        if (limits != null) {
+            timeManager.setBudget(limits.hasDeadline()
+                    ? Math.max(1, limits.getRemainingTime()) : 0);
+            search.setLimits(limits.getNodes(), limits.getDeadline());
+            maxDepth = Math.min(maxDepth, limits.getDepth());
+        }
+        if (ponder && ponderStopped) {
+            search.stop();
+        }
+        long start = System.currentTimeMillis();
+        timeManager.startMove();
+
+        // If we are forced to do a certain move, it is useless to search
+        if (s.getMoves().size() == 1) {
+            value = null;
+            ponderMove = null;
+            return s.getMoves().get(0);
+        }
+
+        long bestMove = PackedMove.NONE;
+        int score = 0;
+        int depth;
+        boolean hit = false;
+        for (depth = 1; depth <= maxDepth; depth++) {
+            if (ponder && !hit && ponderLimits != null) {
+                // The opponent played the expected reply: the time of the
+                // move starts now, the time spent pondering is a bonus
+                hit = true;
+                SearchLimits l = ponderLimits;
+                timeManager.setBudget(l.hasDeadline()
+                        ? Math.max(1, l.getRemainingTime()) : 0);
+                timeManager.restart();
+                search.setLimits(l.getNodes(), l.getDeadline());
+                maxDepth = Math.min(maxDepth, l.getDepth());
+                if (depth > maxDepth) {
+                    break;
+                }
+            }
+            if (!timeManager.canStartIteration()) {
+                break;
+            }
+            try {
+                score = search.aspirationSearch(s, depth, score);
+                bestMove = search.getBestMove();
+                value = score;
+                timeManager.iterationDone(bestMove, score);
+                publish(new SearchInfo<>(depth, score, search.getNodes(),
+                        System.currentTimeMillis() - start, search.getPrincipalVariation(s, depth),
+                        table.getHashFull()));
+            } catch (AIStoppedException e) {
+                if (search.getProvenMove() != PackedMove.NONE) {
+                    bestMove = search.getProvenMove();
+                }
+                break;
+            }
+
+            // A won or lost game does not get any better by searching deeper
+            if (Math.abs(score) > Evaluator.WIN - NegamaxSearch.MAX_DEPTH) {
+                break;
+            }
+        }
+        System.out.println("Depth level " + depth + " reached in "
+                + (System.currentTimeMillis() - start) + " ms, "
+                + search.getNodes() + " nodes, "
+                + Math.round(100 * search.getOrderer().getFirstMoveCutoffRate())
+                + "% of the cutoffs by the first move"
+                + (ponder ? (ponderLimits != null ? ", ponder hit." : ", pondering.") : "."));
+        if (bestMove == PackedMove.NONE) {
+            ponderMove = null;
+            return s.getMoves().get(0);
+        }
+
+        // The expected reply is the best move after bestMove in the table
+        s.doMove(bestMove);
+        long reply = search.getHashMove(s);
+        ponderMove = reply == PackedMove.NONE ? null : s.toMove(reply);
+        s.undoMove(bestMove);
+        return s.toMove(bestMove);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nl.tue.s2id90.group28;
+
+import nl.tue.s2id90.draughts.PackedMove;
+
+/**
+ * Decides when the iterative deepening of a move should stop, so that the
+ * budget of the move is not spent on an iteration that is abandoned halfway.
+ * The time of the next iteration is predicted from the time of the last one
+ * and the effective branching factor: the ratio of the times of the last two
+ * iterations. An iteration is only started if it is predicted to finish in
+ * time; the search itself still stops at the deadline.
+ * <p>
+ * The time that may be used depends on how stable the search is. When the
+ * best move and the score stay the same, an iteration is only started if it
+ * is predicted to finish within STABLE_SHARE of the budget. Each change of
+ * the best move, and a drop of the score, allow an iteration that is
+ * predicted to take longer, up to the whole budget. A move that ends early
+ * leaves the rest of its time to pondering.
+ * <p>
+ * A LimitedPlayer is told the deadline of a move, and sets the budget. A
+ * player that is only stopped when the budget of a move has passed does not
+ * know the budget in advance; then the manager learns it from the time at
+ * which stop() arrived during an earlier move, and until then, every
+ * iteration is started.
+ * @author s147569
+ * @author s140511
+ */
+public class TimeManager {
+
+    /** Share of the budget that the iterations of a stable search may use */
+    private static final double STABLE_SHARE = 0.6;
+
+    /** Extension of that share, per change of the best move, and for a drop
+     * of the score */
+    private static final double INSTABILITY = 0.25;
+
+    /** Bounds of the effective branching factor; the first iterations take
+     * so little time that their ratio means little */
+    private static final double MIN_BRANCHING_FACTOR = 1.5, MAX_BRANCHING_FACTOR = 8;
+
+    /** Time that is kept free before the end of the budget, in ms */
+    private static final long SAFETY_MARGIN = 20;
+
+    /** Score difference that counts as a drop */
+    private final double scoreDrop;
+
+    /** Budget of a move in ms, set or learned; 0 if unknown */
+    private volatile long budget = 0;
+    private volatile boolean learned = false;
+
+    /** Start of the current move and of the current iteration, in ns */
+    private volatile long start;
+    private long iterationStart;
+
+    /** Times of the last two iterations, in ns */
+    private long lastTime, previousTime;
+
+    /** Best move and score of the last iteration */
+    private long lastMove;
+    private double lastScore;
+
+    /** Number of changes of the best move, halved every iteration */
+    private double changes;
+
+    /** Whether the score of the last iteration dropped */
+    private boolean dropped;
+
+    /**
+     * Creates a manager.
+     * @param scoreDrop score difference between iterations that counts as a
+     * drop, in the units of the search
+     */
+    public TimeManager(double scoreDrop) {
+        this.scoreDrop = scoreDrop;
+    }
+
+    /**
+     * Sets the budget of a move.
+     * @param budget budget in ms; 0 if unknown
+     */
+    public void setBudget(long budget) {
+        this.budget = budget;
+        learned = false;
+    }
+
+    /** @return the budget of a move in ms, set or learned; 0 if unknown */
+    public long getBudget() {
+        return budget;
+    }
+
+    /** Starts the time of a new move */
+    public void startMove() {
+        start = iterationStart = System.nanoTime();
+        lastTime = previousTime = 0;
+        lastMove = PackedMove.NONE;
+        changes = 0;
+        dropped = false;
+    }
+
+    /** Restarts the time of the move, but keeps the times and results of the
+     * iterations so far: after a ponder hit, the budget starts at the hit */
+    public void restart() {
+        start = System.nanoTime();
+    }
+
+    /** Records that the framework stopped the search; if no budget was set,
+     * the elapsed time is the budget */
+    public void stopped() {
+        if (budget == 0 || learned) {
+            budget = Math.max(1, getElapsed());
+            learned = true;
+        }
+    }
+
+    /**
+     * Records the result of a completed iteration.
+     * @param move best move, packed
+     * @param score score of the best move
+     */
+    public void iterationDone(long move, double score) {
+        long now = System.nanoTime();
+        previousTime = lastTime;
+        lastTime = now - iterationStart;
+        iterationStart = now;
+
+        changes /= 2;
+        if (lastMove != PackedMove.NONE) {
+            if (move != lastMove) {
+                changes++;
+            }
+            dropped = score < lastScore - scoreDrop;
+        }
+        lastMove = move;
+        lastScore = score;
+    }
+
+    /** @return whether the next iteration should be started: always if the
+     * budget is unknown, otherwise only if it is predicted to finish within
+     * the time that the stability of the search allows */
+    public boolean canStartIteration() {
+        if (budget == 0) {
+            return true;
+        }
+        double share = Math.min(1,
+                STABLE_SHARE + INSTABILITY * (changes + (dropped ? 1 : 0)));
+        double available = share * budget - SAFETY_MARGIN;
+        return getElapsed() + getPrediction() / 1e6 <= available;
+    }
+
+    /** @return the predicted time of the next iteration, in ns */
+    public double getPrediction() {
+        return lastTime * getBranchingFactor();
+    }
+
+    /** @return the effective branching factor of the last two iterations */
+    public double getBranchingFactor() {
+        if (previousTime == 0) {
+            return MAX_BRANCHING_FACTOR;
+        }
+        double factor = (double) lastTime / previousTime;
+        return Math.max(MIN_BRANCHING_FACTOR, Math.min(MAX_BRANCHING_FACTOR, factor));
+    }
+
+    /** @return the time since the start of the move, in ms */
+    public long getElapsed() {
+        return (System.nanoTime() - start) / 1000000;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nl.tue.s2id90.group28;
+
+import java.util.Arrays;
+import nl.tue.s2id90.draughts.PackedMove;
+
+/**
+ * A transposition table: remembers, per position, the result of its last
+ * search, so that a position that is reached again (by a transposition, or
+ * in the next iteration of iterative deepening) does not have to be searched
+ * again, and its best move can be searched first.
+ * <p>
+ * The table is a single long[], allocated on first use, so that a player
+ * that is never asked for a move costs no memory, and the search does not
+ * allocate memory. An entry is four longs: a check word, the best move, the
+ * score and a word with the depth, bound type and generation. The check word
+ * is the Zobrist key XOR the other three words. A reader that finds a check
+ * word that does not XOR back to its key ignores the entry; this way several
+ * threads can share one table without locks, since an entry that is torn by
+ * two concurrent writes simply does not match any key.
+ * <p>
+ * Entries are grouped in buckets of {@link #BUCKET_SIZE} entries; a position
+ * can only be stored in the bucket of its key. Which entry of a full bucket is
+ * replaced is decided by the {@link Replacement} policy. Every search should
+ * start with {@link #newSearch()}, which increases the generation, so that
+ * entries of earlier searches age and are replaced first.
+ * @author s147569
+ * @author s140511
+ */
+public class TranspositionTable {
+
+    /** The policy that decides which entry of a bucket is replaced */
+    public enum Replacement {
+        /** Always replace the first entry of the bucket */
+        ALWAYS,
+        /** Replace the entry with the lowest depth, where an entry loses
+         * AGE_PENALTY plies of depth for every search it is old */
+        DEPTH_PREFERRED
+    }
+
+    /** Bound type: the score is the exact value */
+    public static final int EXACT = 1;
+
+    /** Bound type: the value is at least the score (a beta cutoff) */
+    public static final int LOWER = 2;
+
+    /** Bound type: the value is at most the score (no move raised alpha) */
+    public static final int UPPER = 3;
+
+    /** Number of entries in a bucket */
+    public static final int BUCKET_SIZE = 4;
+
+    /** Number of plies of depth an entry loses per search it is old */
+    private static final int AGE_PENALTY = 2;
+
+    /** Number of longs per entry */
+    private static final int ENTRY = 4;
+
+    /** Layout of the info word */
+    private static final int BOUND_SHIFT = 8, GENERATION_SHIFT = 10;
+    private static final int GENERATIONS = 1 << 8;
+
+    /** The entries: check, move, score, info; null until first use. Volatile,
+     * so that a thread that sees the array also sees its zeroed entries; a
+     * probe or store reads it once */
+    private volatile long[] table;
+
+    /** Number of longs of the table */
+    private final int length;
+
+    /** Number of buckets minus one; the number of buckets is a power of two */
+    private final long bucketMask;
+
+    private final Replacement replacement;
+
+    /** Generation of the current search */
+    private volatile int generation = 0;
+
+    /**
+     * Creates a table that uses at most the given amount of memory.
+     * @param megabytes size in MB
+     * @param replacement policy for full buckets
+     */
+    public TranspositionTable(int megabytes, Replacement replacement) {
+        if (megabytes < 1) throw new IllegalArgumentException("size < 1 MB");
+        long bytes = (long) megabytes << 20;
+        long buckets = Long.highestOneBit(bytes / (8 * ENTRY * BUCKET_SIZE));
+        // a java array has at most Integer.MAX_VALUE elements
+        while (buckets * ENTRY * BUCKET_SIZE > Integer.MAX_VALUE - 8) buckets /= 2;
+        this.length = (int) (buckets * ENTRY * BUCKET_SIZE);
+        this.bucketMask = buckets - 1;
+        this.replacement = replacement;
+    }
+
+    /**
+     * Creates a table of the given size with a depth preferred replacement
+     * policy.
+     * @param megabytes size in MB
+     */
+    public TranspositionTable(int megabytes) {
+        this(megabytes, Replacement.DEPTH_PREFERRED);
+    }
+
+    /** Starts a new search: entries of earlier searches become older */
+    public void newSearch() {
+        entries();
+        generation = (generation + 1) % GENERATIONS;
+    }
+
+    /** Removes all entries */
+    public void clear() {
+        Arrays.fill(entries(), 0L);
+        generation = 0;
+    }
+
+    /**
+     * Reads the entry of a position, consistently: the words of the entry are
+     * copied to data, and only returned if they match the key.
+     * @param key Zobrist key of the position
+     * @param data array of at least three longs that receives the move, the
+     * score and the info word
+     * @return whether or not the table has an entry for key
+     * @see #getMove(long[])
+     * @see #getScore(long[])
+     * @see #getDepth(long[])
+     * @see #getBound(long[])
+     */
+    public boolean probe(long key, long[] data) {
+        long[] table = entries();
+        int bucket = bucket(key);
+        for (int i = bucket; i < bucket + ENTRY * BUCKET_SIZE; i += ENTRY) {
+            long move = table[i + 1], score = table[i + 2], info = table[i + 3];
+            if ((table[i] ^ move ^ score ^ info) == key && info != 0) {
+                data[0] = move;
+                data[1] = score;
+                data[2] = info;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return the best move of entry data, packed; PackedMove.NONE if the
+     * entry has no move */
+    public static long getMove(long[] data) {
+        return data[0];
+    }
+
+    /** @return the score of entry data */
+    public static double getScore(long[] data) {
+        return Double.longBitsToDouble(data[1]);
+    }
+
+    /** @return the remaining depth of the search of entry data */
+    public static int getDepth(long[] data) {
+        return (int) data[2] & 0xFF;
+    }
+
+    /** @return the bound type of entry data: EXACT, LOWER or UPPER */
+    public static int getBound(long[] data) {
+        return (int) (data[2] >>> BOUND_SHIFT) & 3;
+    }
+
+    /**
+     * Stores the result of a search.
+     * @param key Zobrist key of the position
+     * @param move best move, packed; PackedMove.NONE if not known
+     * @param score value of the position
+     * @param depth remaining depth of the search (0..255)
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long key, long move, double score, int depth, int bound) {
+        long[] table = entries();
+        int bucket = bucket(key);
+        int gen = generation;
+        int victim = bucket;
+        int worst = Integer.MAX_VALUE;
+        for (int i = bucket; i < bucket + ENTRY * BUCKET_SIZE; i += ENTRY) {
+            long info = table[i + 3];
+            if (info == 0 || (table[i] ^ table[i + 1] ^ table[i + 2] ^ info) == key) {
+                // a free entry, or the entry of this position: keep its move
+                // if the new search did not find one
+                if (move == PackedMove.NONE && info != 0) move = table[i + 1];
+                victim = i;
+                break;
+            }
+            if (replacement == Replacement.ALWAYS) continue;
+            int age = (gen - (int) (info >>> GENERATION_SHIFT) + GENERATIONS) % GENERATIONS;
+            int worth = ((int) info & 0xFF) - AGE_PENALTY * age;
+            if (worth < worst) {
+                worst = worth;
+                victim = i;
+            }
+        }
+        long info = depth & 0xFF | (long) bound << BOUND_SHIFT
+                | (long) gen << GENERATION_SHIFT;
+        long scoreBits = Double.doubleToLongBits(score);
+        table[victim] = key ^ move ^ scoreBits ^ info;
+        table[victim + 1] = move;
+        table[victim + 2] = scoreBits;
+        table[victim + 3] = info;
+    }
+
+    /** @return the number of entries, in permille, that were written in the
+     * current search; estimated from the first thousand entries */
+    public int getHashFull() {
+        long[] table = entries();
+        int n = Math.min(1000, length / ENTRY), used = 0;
+        int gen = generation;
+        for (int i = 0; i < n; i++) {
+            long info = table[i * ENTRY + 3];
+            if (info != 0 && (int) (info >>> GENERATION_SHIFT) == gen) used++;
+        }
+        return n == 0 ? 0 : used * 1000 / n;
+    }
+
+    /** @return the number of entries of the table */
+    public int getCapacity() {
+        return length / ENTRY;
+    }
+
+    /** @return the entries, allocated on first use */
+    private long[] entries() {
+        long[] t = table;
+        return t != null ? t : allocate();
+    }
+
+    /** Allocates the entries, once, even if several threads ask */
+    private synchronized long[] allocate() {
+        if (table == null) {
+            table = new long[length];
+        }
+        return table;
+    }
+
+    /** @return index in table of the first entry of the bucket of key */
+    private int bucket(long key) {
+        return (int) (key & bucketMask) * ENTRY * BUCKET_SIZE;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nl.tue.s2id90.group28;
+
+import nl.tue.s2id90.draughts.DraughtsState;
+import nl.tue.s2id90.draughts.Perft;
+
+/**
+ * Measures the speed-up of YBWCPlayer: it searches a position to a fixed
+ * depth with one thread and with more threads, and compares the time and
+ * the number of nodes. Each search starts with an empty table.
+ * <p>
+ * Usage:
+ * <blockquote><pre>
+ *   java nl.tue.s2id90.group28.YBWCBenchmark [depth] [threads] [FEN]
+ * </pre></blockquote>
+ * @author s147569
+ * @author s140511
+ */
+public final class YBWCBenchmark {
+    private static final int ROUNDS = 3;
+
+    private YBWCBenchmark() {}
+
+    /**
+     * @param args [depth] [threads] [FEN]
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int threads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        DraughtsState state = args.length > 2 ? Perft.getState(args[2]) : new DraughtsState();
+
+        long[] time = new long[2], nodes = new long[2];
+        for (int round = 1; round <= ROUNDS; round++) {
+            // the last round is measured, the others warm up the JIT
+            int i = 0;
+            for (int n : new int[] { 1, threads }) {
+                YBWCPlayer player = new YBWCPlayer(n, AlphaBetaPlayer.DEFAULT_TABLE_SIZE);
+                long start = System.nanoTime();
+                player.search(state, depth);
+                time[i] = System.nanoTime() - start;
+                nodes[i] = player.getNodes();
+                if (round == ROUNDS) {
+                    System.out.printf("%2d threads %8.0f ms %12d nodes %5.1f%% search overhead"
+                            + " %5.1f%% synchronisation overhead%n",
+                            n, time[i] / 1e6, nodes[i], 100 * player.getSearchOverhead(),
+                            100 * player.getSynchronisationOverhead());
+                }
+                i++;
+            }
+        }
+        System.out.printf("speed up     %8.2f x%n", (double) time[0] / time[1]);
+        System.out.printf("node ratio   %8.2f x%n", (double) nodes[1] / nodes[0]);
+    }
+}
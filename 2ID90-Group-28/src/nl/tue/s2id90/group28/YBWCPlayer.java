@@ -0,0 +1,481 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nl.tue.s2id90.group28;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import nl.tue.s2id90.draughts.DraughtsState;
+import nl.tue.s2id90.draughts.PackedMove;
+import nl.tue.s2id90.draughts.player.DraughtsPlayer;
+import org10x10.dam.game.Move;
+
+/**
+ * A player that splits the search tree over several threads with the Young
+ * Brothers Wait Concept (YBWC), on a fork/join pool. In a node, the eldest
+ * child, the first move of the move ordering, is searched first and alone.
+ * Only when it has established a bound, the younger brothers are forked, each
+ * as a task with its own copy of the state, and searched in parallel with a
+ * null window, at the bound of the node when it was forked. A younger
+ * brother that fails high is searched again, first with a null window if the
+ * bound has risen above its value since, then with the full window.
+ * <p>
+ * A cutoff in a node makes the searches of its younger brothers useless. They
+ * are cancelled cooperatively: a task that starts or runs while an ancestor
+ * has a cutoff aborts, and returns its thread to the pool. A node does not
+ * return before all the brothers it forked have finished, so no task of a
+ * search outlives it. Near
+ * the leaves, a split costs more than it gains, so nodes other than the root
+ * with a remaining depth below MIN_SPLIT_DEPTH are searched sequentially by
+ * the NegamaxSearch of the thread, with do/undo on one state. States are only cloned at split
+ * points.
+ * <p>
+ * All threads share one transposition table. After every search, the nodes,
+ * the search overhead (the fraction of the nodes in subtrees that were
+ * refuted by a cutoff of an ancestor, which a sequential search would not
+ * have searched) and the synchronisation
+ * overhead (the fraction of the thread time not spent searching subtrees:
+ * waiting for brothers, stealing work, splitting) are printed. YBWCBenchmark
+ * measures the speed-up over one thread.
+ * @author s147569
+ * @author s140511
+ */
+public class YBWCPlayer extends DraughtsPlayer {
+
+    /** Nodes with a smaller remaining depth are not split */
+    public static final int MIN_SPLIT_DEPTH = 4;
+
+    private final TranspositionTable table;
+
+    private final int threads;
+
+    /** Runs the tasks; created on first use */
+    private ForkJoinPool pool = null;
+
+    /** The worker threads of the pool that are alive; each has its own
+     * sequential search */
+    private final Set<Worker> workers = ConcurrentHashMap.newKeySet();
+
+    /** Whether stop() has been called during the current search */
+    private volatile boolean stopped = false;
+
+    /** Best move of the last completed iteration */
+    private long bestMove = PackedMove.NONE;
+
+    /** Statistics of the current search */
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder wastedNodes = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final AtomicLong splits = new AtomicLong();
+    private long wallNanos;
+
+    /** Value of the last move, for the player that made it */
+    private Integer value = null;
+
+    public YBWCPlayer() {
+        this(Runtime.getRuntime().availableProcessors(), AlphaBetaPlayer.DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * Creates a player that searches with the given number of threads.
+     * @param threads number of worker threads
+     * @param tableSize size of the shared transposition table in MB
+     */
+    public YBWCPlayer(int threads, int tableSize) {
+        if (threads < 1) throw new IllegalArgumentException("threads < 1");
+        this.threads = threads;
+        table = new TranspositionTable(tableSize);
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+        for (Worker worker : workers) {
+            worker.search.stop();
+        }
+    }
+
+    @Override
+    public Integer getValue() {
+        return value;
+    }
+
+    @Override
+    public String getName() {
+        return super.getName() + " (" + threads + " threads)";
+    }
+
+    @Override
+    public Move getMove(DraughtsState s) {
+        // If we are forced to do a certain move, it is useless to search
+        if (s.getMoves().size() == 1) {
+            value = null;
+            return s.getMoves().get(0);
+        }
+
+        int depth = search(s, NegamaxSearch.MAX_DEPTH - 1);
+        long time = Math.max(1, wallNanos / 1000000);
+        System.out.println("Depth level " + depth + " completed, "
+                + getNodes() + " nodes, " + (1000 * getNodes() / time) + " nodes/s, "
+                + splits.get() + " splits, "
+                + Math.round(100 * getSearchOverhead()) + "% search overhead, "
+                + Math.round(100 * getSynchronisationOverhead())
+                + "% synchronisation overhead, " + threads + " threads.");
+        return bestMove == PackedMove.NONE ? s.getMoves().get(0) : s.toMove(bestMove);
+    }
+
+    /**
+     * Searches s with iterative deepening, until maxDepth, until stop() is
+     * called, or until the game is won or lost. The best move and the value
+     * of the last completed iteration are kept.
+     * @param s the state, unchanged afterwards
+     * @param maxDepth depth of the last iteration
+     * @return the depth of the last completed iteration
+     */
+    int search(DraughtsState s, int maxDepth) {
+        table.newSearch();
+        stopped = false;
+        for (Worker worker : workers) {
+            worker.search.newSearch();
+        }
+        bestMove = PackedMove.NONE;
+        nodes.reset();
+        wastedNodes.reset();
+        busyNanos.reset();
+        splits.set(0);
+        long start = System.nanoTime();
+
+        int depth;
+        for (depth = 1; depth <= maxDepth; depth++) {
+            SplitTask root = new SplitTask(s.clone(), -NegamaxSearch.INFINITY,
+                    NegamaxSearch.INFINITY, depth, 0, null);
+            int score = getPool().invoke(root);
+            if (root.aborted) {
+                break;
+            }
+            bestMove = root.move;
+            value = score;
+
+            // A won or lost game does not get any better by searching deeper
+            if (Math.abs(score) > Evaluator.WIN - NegamaxSearch.MAX_DEPTH) {
+                depth++;
+                break;
+            }
+        }
+        wallNanos = System.nanoTime() - start;
+        return depth - 1;
+    }
+
+    /** @return the number of nodes of the last search */
+    long getNodes() {
+        return nodes.sum();
+    }
+
+    /** @return the fraction of the nodes of the last search in subtrees that
+     * turned out to be useless, because an ancestor had a cutoff */
+    double getSearchOverhead() {
+        long n = nodes.sum();
+        return n == 0 ? 0 : (double) wastedNodes.sum() / n;
+    }
+
+    /** @return the fraction of the thread time of the last search that was
+     * not spent in the sequential searches of subtrees */
+    double getSynchronisationOverhead() {
+        double total = (double) threads * wallNanos;
+        return total == 0 ? 0 : Math.max(0, 1 - busyNanos.sum() / total);
+    }
+
+    /** @return the best move of the last completed iteration, packed */
+    long getBestMove() {
+        return bestMove;
+    }
+
+    /** @return the pool, created on first use */
+    private ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(threads, Worker::new, null, false);
+        }
+        return pool;
+    }
+
+    /** @return the sequential search of the current thread, a worker of the
+     * pool */
+    private NegamaxSearch getSearch() {
+        return ((Worker) Thread.currentThread()).search;
+    }
+
+    /**
+     * A worker thread of the pool, with its own sequential search. The pool
+     * retires a worker that has been idle for a while, as between moves; its
+     * search then goes with it.
+     */
+    private class Worker extends ForkJoinWorkerThread {
+        final NegamaxSearch search = new NegamaxSearch(table);
+
+        Worker(ForkJoinPool pool) {
+            super(pool);
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            workers.add(this);
+            if (stopped) search.stop();
+        }
+
+        @Override
+        protected void onTermination(Throwable exception) {
+            workers.remove(this);
+            super.onTermination(exception);
+        }
+    }
+
+    /**
+     * The search of a node, to be run by the pool. The result is the
+     * fail-soft value of the node for the player to move; it is meaningless
+     * if the task is aborted.
+     */
+    private class SplitTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final DraughtsState state;
+        private final int alpha, beta, depth, ply;
+        private final SplitTask parent;
+
+        /** Whether a child caused a cutoff; the other children are useless */
+        private volatile boolean cutoff = false;
+
+        /** Whether the search was stopped or made useless by a cutoff */
+        private boolean aborted = false;
+
+        /** Whether the nodes of the subtree have been counted as wasted */
+        private boolean wasted = false;
+
+        /** Nodes of the subtree that have not been counted as wasted, and the
+         * best move */
+        private long subtreeNodes = 0;
+        private long move = PackedMove.NONE;
+
+        SplitTask(DraughtsState state, int alpha, int beta, int depth, int ply,
+                SplitTask parent) {
+            this.state = state;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.depth = depth;
+            this.ply = ply;
+            this.parent = parent;
+        }
+
+        /** @return whether the search was stopped or an ancestor has a cutoff */
+        private boolean isAborted() {
+            if (stopped) {
+                return true;
+            }
+            for (SplitTask t = parent; t != null; t = t.parent) {
+                if (t.cutoff) return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected Integer compute() {
+            int value = 0;
+            try {
+                if (isAborted()) {
+                    throw new AIStoppedException();
+                }
+                // the root is always split, which records its best move
+                // and treats it as the root
+                value = depth < MIN_SPLIT_DEPTH && ply > 0 ? searchSequentially() : split();
+            } catch (AIStoppedException e) {
+                aborted = true;
+            }
+            if (!stopped && (aborted || parent != null && isAborted())) {
+                // a sequential search would not have searched this subtree
+                wasted = true;
+                wastedNodes.add(subtreeNodes);
+            }
+            return value;
+        }
+
+        /** Adds the nodes of a finished child that are not wasted */
+        private void addNodes(SplitTask child) {
+            if (!child.wasted) {
+                subtreeNodes += child.subtreeNodes;
+            }
+        }
+
+        /** Searches the node with the NegamaxSearch of this thread */
+        private int searchSequentially() throws AIStoppedException {
+            NegamaxSearch search = getSearch();
+            long n = search.getNodes();
+            long start = System.nanoTime();
+            try {
+                return search.searchNode(state, depth, alpha, beta, ply, this::isAborted);
+            } finally {
+                busyNanos.add(System.nanoTime() - start);
+                subtreeNodes += search.getNodes() - n;
+                nodes.add(search.getNodes() - n);
+            }
+        }
+
+        /** Searches the eldest child, then the others in parallel */
+        private int split() throws AIStoppedException {
+            NegamaxSearch search = getSearch();
+            nodes.increment();
+            subtreeNodes++;
+            boolean root = (ply == 0);
+
+            // A repeated position can be repeated again, so it is a draw
+            if (!root && state.isRepetition()) {
+                return NegamaxSearch.DRAW;
+            }
+
+            // Use the result of an earlier search of this position
+            long key = state.getHash();
+            long hashMove = root ? bestMove : PackedMove.NONE;
+            long[] entry = new long[3];
+            if (table.probe(key, entry)) {
+                if (hashMove == PackedMove.NONE) {
+                    hashMove = TranspositionTable.getMove(entry);
+                }
+                if (!root && TranspositionTable.getDepth(entry) >= depth) {
+                    int score = NegamaxSearch.fromTable(
+                            (int) TranspositionTable.getScore(entry), ply);
+                    int bound = TranspositionTable.getBound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || bound == TranspositionTable.LOWER && score >= beta
+                            || bound == TranspositionTable.UPPER && score <= alpha) {
+                        return score;
+                    }
+                }
+            }
+
+            long[] moves = new long[DraughtsState.MAX_MOVES];
+            int n = state.getMoves(moves, 0);
+            if (n == 0) {
+                return -Evaluator.WIN + ply;
+            }
+            if (!root && state.isDraw()) {
+                return NegamaxSearch.DRAW;
+            }
+            search.getOrderer().order(state, moves, n, ply, hashMove);
+
+            // The eldest brother, on this state, possibly split itself
+            int a = alpha;
+            state.doMove(moves[0]);
+            SplitTask eldest = new SplitTask(state, -beta, -a, depth - 1, ply + 1, this);
+            int best;
+            try {
+                best = -eldest.compute();
+            } finally {
+                state.undoMove(moves[0]);
+                addNodes(eldest);
+            }
+            if (eldest.aborted) {
+                throw new AIStoppedException();
+            }
+            move = moves[0];
+            a = Math.max(a, best);
+            if (a >= beta || n == 1) {
+                return store(search, key, best, alpha);
+            }
+
+            // The younger brothers, in parallel with a null window. They are
+            // forked in reverse order: this thread runs the last forked task
+            // first, so it searches the brothers in the order of the move
+            // ordering, while idle threads steal the others.
+            splits.incrementAndGet();
+            SplitTask[] brothers = new SplitTask[n];
+            for (int i = n - 1; i >= 1; i--) {
+                DraughtsState child = state.clone();
+                child.doMove(moves[i]);
+                brothers[i] = new SplitTask(child, -a - 1, -a, depth - 1, ply + 1, this);
+                brothers[i].fork();
+            }
+            int i = 1;
+            try {
+                for (; i < n && !cutoff; i++) {
+                    int value = -brothers[i].join();
+                    addNodes(brothers[i]);
+                    if (brothers[i].aborted) {
+                        throw new AIStoppedException();
+                    }
+                    // A fail high against the bound at the fork is only a
+                    // lower bound, also when the bound has risen since
+                    int forkAlpha = -brothers[i].beta;
+                    if (value > forkAlpha && value < beta) {
+                        if (value <= a) {
+                            value = research(moves[i], a, a + 1);
+                        }
+                        if (value > a && value < beta) {
+                            // better than the best move so far: find out how much
+                            value = research(moves[i], a, beta);
+                        }
+                    }
+                    if (value > best) {
+                        best = value;
+                        move = moves[i];
+                        a = Math.max(a, value);
+                        if (a >= beta) {
+                            // the other brothers are useless: they notice the
+                            // cutoff and abort, or do not start at all
+                            cutoff = true;
+                            search.getOrderer().cutoff(moves[i], ply, depth, i);
+                        }
+                    }
+                }
+            } finally {
+                // Wait for the brothers that are not needed any more, so that
+                // they do not outlive this node: the ones that this thread
+                // has not started are taken back, the others notice the
+                // cutoff and abort
+                if (i < n) {
+                    cutoff = true;
+                    for (; i < n; i++) {
+                        if (!brothers[i].tryUnfork()) {
+                            brothers[i].quietlyJoin();
+                        }
+                    }
+                }
+            }
+            return store(search, key, best, alpha);
+        }
+
+        /**
+         * Searches a child of this node again, on the state of this node.
+         * @param childMove the move to the child
+         * @return the fail-soft value of the child for the player to move in
+         * this node, within the window alpha..beta
+         */
+        private int research(long childMove, int alpha, int beta) throws AIStoppedException {
+            state.doMove(childMove);
+            SplitTask research = new SplitTask(state, -beta, -alpha, depth - 1, ply + 1, this);
+            int value;
+            try {
+                value = -research.compute();
+            } finally {
+                state.undoMove(childMove);
+                addNodes(research);
+            }
+            if (research.aborted) {
+                throw new AIStoppedException();
+            }
+            return value;
+        }
+
+        /** Stores the result of the node in the table */
+        private int store(NegamaxSearch search, long key, int best, int alphaOrig) {
+            search.store(key, move, best, ply, depth, alphaOrig, beta);
+            return best;
+        }
+    }
+}
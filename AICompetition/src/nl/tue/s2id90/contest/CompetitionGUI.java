@@ -12,8 +12,9 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
@@ -49,12 +50,14 @@ import net.xeoh.plugins.base.options.addpluginsfrom.OptionReportAfter;
 import net.xeoh.plugins.base.util.PluginManagerUtil;
 import net.xeoh.plugins.base.util.uri.ClassURI;
 import nl.tue.s2id90.contest.util.Identity;
+import nl.tue.s2id90.contest.util.PonderTask;
 import nl.tue.s2id90.contest.util.SearchTask;
 import nl.tue.s2id90.contest.util.TimedSearchTask;
 import nl.tue.s2id90.game.Game;
-import nl.tue.s2id90.game.Game.Result;
 import nl.tue.s2id90.game.GameState;
 import nl.tue.s2id90.game.Player;
+import nl.tue.s2id90.game.PonderingPlayer;
+import nl.tue.s2id90.game.SearchInfo;
 import nl.tue.win.util.Timer;
 
 /**
@@ -455,19 +458,25 @@ public class CompetitionGUI<Competitor extends Player<M,S>, P extends PlayerProv
     }
         
     SearchTask currentSearchTask=null;
+    
+    /** the ponder searches of the players that wait for their opponent, at
+     * most one per player, and the last move that was played. **/
+    private final Map<Player<M,S>, PonderTask<M, Long, S>> ponderTasks = new IdentityHashMap<>();
+    private M lastMove=null;
+    
     private void continueGame(final Game game, final S gs) {
         if ((currentGame==null) || gs.isEndState()) {
             finishGame(game,gs);
         } else {
             updateGUI(game,gs); updateGUI();
-            Player currentPlayer;
-            if (gs.isWhiteToMove())
-                currentPlayer  =  game.first;
-            else currentPlayer = game.second;
+            Player<M,S> currentPlayer = getPlayer(game, gs.isWhiteToMove());
+            PonderTask<M, Long, S> task = ponderTasks.remove(currentPlayer);
             
             if (currentPlayer.isHuman()) {
                 //getHumanMove(game, gs); done via GameGUIListener
                 currentSearchTask=null;
+            } else if (task!=null) {
+                continuePondering(task);
             } else {
                 currentSearchTask = getComputerMove(currentPlayer, gs, game);
             }
@@ -476,53 +485,163 @@ public class CompetitionGUI<Competitor extends Player<M,S>, P extends PlayerProv
     
     private void finishGame(final Game game, final S gs) {
         currentGame = null;
+        stopPondering();
         updateGUI(); updateGUI(game,gs);
-        // for now, give a random result
-        Result[] values = Result.values();
-        int pick = new Random().nextInt(values.length - 1);
-        if (game!=null) game.setResult(Result.values()[pick]);
+        // a game that was stopped before its end has an UNKNOWN result
+        if (game!=null) game.setResult(gs.getResult());
         gamesTable.setModel(gamesTable.getModel()); // redraw ????
         updateRanking();
         notifyCompetitionListeners(game,false); // notify of end of game
     }
     
-    private SearchTask getComputerMove(final Player currentPlayer, final S gs, final Game game) {
+    /**
+     * @param game a game of this competition
+     * @param white whether to return the white player
+     * @return the white or the black player of the game
+     */
+    @SuppressWarnings("unchecked")
+    private Player<M,S> getPlayer(Game game, boolean white) {
+        // a Game holds raw Players, but all players of this competition are
+        // Competitors, which are Player<M,S>
+        return (Player<M,S>) (white ? game.first : game.second);
+    }
+    
+    /** @return a clone of gs. **/
+    @SuppressWarnings("unchecked")
+    private S copy(S gs) {
+        // the clone of a state is a state of the same class
+        return (S) gs.clone();
+    }
+    
+    private SearchTask getComputerMove(final Player<M,S> currentPlayer, final S gs, final Game game) {
         SearchTask<M, Long, S> searchTask;
         final Timer timer = new Timer();
         final int maxTime = timeSlider.getValue();
         searchTask = new TimedSearchTask<M, Long, S>(currentPlayer, gs, maxTime) {
-            private long MIN_DELAY=1500; // minimum time for a move 1500 milliseconds
+            @Override
+            public void searchInfo(SearchInfo<M> info) {
+                showSearchInfo(currentPlayer, gs, info);
+            }
+            
             @Override
             public void done(M m) {
-                timer.stop();
-                
-                // sleep at least MIN DELAY ms before doing the move on the board
-                long dt = timer.elapsedTimeInMilliSeconds();
-                System.err.println("dt = " + dt + "/" + 1000*maxTime+"\n\n");
-                if (dt <MIN_DELAY) {
-                    sleep(MIN_DELAY-dt);
-                }
-                
-                // apply move in the current game state
-                if (gs.getMoves().contains(m)) {
-                    //gs.doMove(m);
-                    notifyCompetitionListeners(m); // notify of next AI move
-                    //gameGUI.animateMove(m);
-                    // recurse
-                    continueGame(game,gs); 
-                } else {
-                    String message=("<html><center>"+(gs.isWhiteToMove()?"White":"Black") + " player ("+currentPlayer.getName()+")<br> tries an illegal move:<br>" + m);
-                    LOG.log(Level.SEVERE, message);
-                    JOptionPane.showMessageDialog(rootPane, message, "illegal move", JOptionPane.ERROR_MESSAGE);
-                    finishGame(game,gs); 
-                }
-
+                moveFound(currentPlayer, gs, game, m, timer, maxTime);
             }
         };
         timer.start();
         searchTask.execute();
         return searchTask;
     }
+    
+    /** shows the progress of the search as the value of the player. **/
+    private void showSearchInfo(Player<M,S> currentPlayer, S gs, SearchInfo<M> info) {
+        JLabel label = gs.isWhiteToMove() ? whiteValueLabel : blackValueLabel;
+        label.setText(info.getScore() + " (" + info.getDepth() + ")");
+        label.setToolTipText(info.toString());
+        LOG.log(Level.FINE, "{0}: {1}", new Object[]{currentPlayer.getName(), info});
+    }
+    
+    private static final long MIN_DELAY=1500; // minimum time for a move 1500 milliseconds
+    
+    /** plays the move m that the computer player found, and continues the game. **/
+    private void moveFound(Player<M,S> currentPlayer, S gs, Game game, M m, Timer timer, int maxTime) {
+        timer.stop();
+
+        // sleep at least MIN DELAY ms before doing the move on the board
+        long dt = timer.elapsedTimeInMilliSeconds();
+        System.err.println("dt = " + dt + "/" + 1000*maxTime+"\n\n");
+        if (dt <MIN_DELAY) {
+            sleep(MIN_DELAY-dt);
+        }
+
+        // apply move in the current game state
+        if (gs.getMoves().contains(m)) {
+            //gs.doMove(m);
+            lastMove = m;
+            notifyCompetitionListeners(m); // notify of next AI move
+            //gameGUI.animateMove(m);
+            // the opponent's ponder search, if any, is hit or cancelled in
+            // continueGame
+            startPondering(currentPlayer, gs, game);
+            // recurse
+            continueGame(game,gs); 
+        } else {
+            String message=("<html><center>"+(gs.isWhiteToMove()?"White":"Black") + " player ("+currentPlayer.getName()+")<br> tries an illegal move:<br>" + m);
+            LOG.log(Level.SEVERE, message);
+            JOptionPane.showMessageDialog(rootPane, message, "illegal move", JOptionPane.ERROR_MESSAGE);
+            finishGame(game,gs); 
+        }
+    }
+    
+    /**
+     * lets a player that just moved ponder on the reply it expects, if it is a
+     * PonderingPlayer. For fairness, a player only ponders against a human or
+     * against another player that ponders, so that a player never loses
+     * processor time to an opponent that thinks on its time.
+     */
+    private void startPondering(final Player<M,S> player, final S gs, final Game game) {
+        Player<M,S> opponent = getPlayer(game, player != game.first);
+        if (currentGame != game || gs.isEndState() || !(player instanceof PonderingPlayer)
+                || opponent == player
+                || !(opponent.isHuman() || opponent instanceof PonderingPlayer)) {
+            return;
+        }
+        PonderingPlayer<M, S> pondering = (PonderingPlayer<M, S>) player;
+        M expected = pondering.getPonderMove();
+        if (expected == null || !gs.getMoves().contains(expected)) {
+            return;
+        }
+        S ponderState = copy(gs);
+        ponderState.doMove(expected);
+        final Timer timer = new Timer();
+        final int maxTime = timeSlider.getValue();
+        PonderTask<M, Long, S> ponderTask = new PonderTask<M, Long, S>(pondering, ponderState, expected) {
+            @Override
+            public void ponderHit(int timeLimitInSeconds) {
+                timer.start(); // the time of the move starts now
+                super.ponderHit(timeLimitInSeconds);
+            }
+            
+            @Override
+            public void searchInfo(SearchInfo<M> info) {
+                if (currentSearchTask == this) showSearchInfo(player, gs, info);
+            }
+            
+            @Override
+            public void moveFound(M m) {
+                CompetitionGUI.this.moveFound(player, gs, game, m, timer, maxTime);
+            }
+            
+            @Override
+            public void missed() {
+                // the player has stopped: now it can search the actual state
+                if (currentGame == game) continueGame(game, gs);
+            }
+        };
+        ponderTasks.put(player, ponderTask);
+        ponderTask.execute();
+    }
+    
+    /** the opponent of the pondering player has moved: a ponder hit lets the
+     * ponder search continue as the search of the move, a miss stops it. **/
+    private void continuePondering(PonderTask<M, Long, S> task) {
+        if (task.getExpectedMove().equals(lastMove)) {
+            LOG.log(Level.FINE, "ponder hit: {0}", lastMove);
+            currentSearchTask = task;
+            task.ponderHit(timeSlider.getValue());
+        } else {
+            LOG.log(Level.FINE, "ponder miss: {0}", lastMove);
+            currentSearchTask = null;
+            task.cancel();
+        }
+    }
+    
+    /** stops the ponder searches, if any, because the game is over. **/
+    private void stopPondering() {
+        List<PonderTask<M, Long, S>> tasks = new ArrayList<>(ponderTasks.values());
+        ponderTasks.clear();
+        tasks.forEach(PonderTask::cancel);
+    }
     //</editor-fold>
      
     int getResult(Identity p) {
@@ -710,6 +829,7 @@ public class CompetitionGUI<Competitor extends Player<M,S>, P extends PlayerProv
 
     @Override
     public void onHumanMove(M m) {
+        lastMove = m;
         continueGame(currentGame,gameGUI.getCurrentGameState());
     }
 
@@ -0,0 +1,108 @@
+package nl.tue.s2id90.contest.util;
+
+import java.util.TimerTask;
+import nl.tue.s2id90.game.GameState;
+import nl.tue.s2id90.game.PonderingPlayer;
+import nl.tue.s2id90.game.SearchLimits;
+
+/**
+ * A search task that lets a player ponder: it searches the state after the
+ * reply the player expects while its opponent thinks. When the opponent has
+ * moved, the task is either hit or cancelled:
+ * <ul>
+ * <li>ponderHit(): the opponent played the expected reply; the search
+ *     continues with a time limit, and moveFound() is called with its move;</li>
+ * <li>cancel(): the opponent played another move; the search is stopped, and
+ *     missed() is called when the player has returned, so that it can be
+ *     asked for its move as usual.</li>
+ * </ul>
+ * A ponder search that finishes before the opponent has moved keeps its move
+ * until then. All methods, and moveFound() and missed(), are called on the
+ * event dispatch thread.
+ * @author huub
+ * @param <M> Move
+ * @param <U> UndoMove
+ * @param <S> GameState<M>
+ * @see PonderingPlayer
+ */
+public abstract class PonderTask<M, U, S extends GameState<M>>
+    extends SearchTask<M, U, S> {
+    private final PonderingPlayer<M, S> player;
+    private final M expectedMove;
+    private volatile boolean cancelled = false;
+    private boolean hit = false, finished = false;
+    private M result;
+
+    /**
+     * @param player the player that ponders
+     * @param s the state after the expected reply
+     * @param expectedMove the expected reply
+     */
+    public PonderTask(PonderingPlayer<M, S> player, S s, M expectedMove) {
+        super(player, s);
+        this.player = player;
+        this.expectedMove = expectedMove;
+    }
+
+    @Override
+    protected M search(S s) {
+        // a task that is cancelled before it started does not search at all
+        return cancelled ? null : player.ponder(s);
+    }
+
+    /** @return the reply the player expects. **/
+    public M getExpectedMove() {
+        return expectedMove;
+    }
+
+    /**
+     * the opponent played the expected reply: the player gets the given
+     * number of seconds from now on, after which it is stopped.
+     * @param timeLimitInSeconds time limit of the move
+     */
+    public void ponderHit(int timeLimitInSeconds) {
+        hit = true;
+        if (finished) {
+            moveFound(result);
+        } else {
+            player.ponderHit(SearchLimits.time(timeLimitInSeconds*1000L));
+            TimedSearchTask.timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    PonderTask.this.stop();
+                }
+            }, timeLimitInSeconds*1000L);
+        }
+    }
+
+    /** the opponent played another move than the expected reply: stops the
+     * search; missed() is called when the player has returned. **/
+    public void cancel() {
+        cancelled = true;
+        if (finished) {
+            missed();
+        } else {
+            stop();
+        }
+    }
+
+    @Override
+    public final void done(M m) {
+        finished = true;
+        result = m;
+        if (hit) {
+            moveFound(m);
+        } else if (cancelled) {
+            missed();
+        }
+    }
+
+    /**
+     * called after a ponder hit, with the move of the player.
+     * @param m move found in search
+     */
+    abstract public void moveFound(M m);
+
+    /** called after a ponder miss, when the player has stopped pondering. **/
+    abstract public void missed();
+}
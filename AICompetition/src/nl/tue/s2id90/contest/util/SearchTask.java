@@ -1,9 +1,13 @@
 package nl.tue.s2id90.contest.util;
 
 import java.util.concurrent.ExecutionException;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import nl.tue.s2id90.game.GameState;
+import nl.tue.s2id90.game.LimitedPlayer;
 import nl.tue.s2id90.game.Player;
+import nl.tue.s2id90.game.SearchInfo;
+import nl.tue.s2id90.game.SearchLimits;
 
 /**
  * class
@@ -17,14 +21,26 @@ public abstract class SearchTask<M,U,S extends GameState<M>>
     private SwingWorker<M,U> worker;
     private final Player<M,S> player;
     private final S state;
+    private final SearchLimits limits;
 
     /**
      * @param player for whom to perform a search for the best move in state s
      * @param s game state in which to search for a best move
      */
     public SearchTask(Player<M,S> player, S s) {
+        this(player, s, null);
+    }
+
+    /**
+     * @param player for whom to perform a search for the best move in state s
+     * @param s game state in which to search for a best move
+     * @param limits limits of the search, passed to players that implement
+     *        LimitedPlayer; null if they are not told
+     */
+    public SearchTask(Player<M,S> player, S s, SearchLimits limits) {
         this.state = s;
         this.player = player;
+        this.limits = limits;
     }
     
     /**
@@ -44,7 +60,18 @@ public abstract class SearchTask<M,U,S extends GameState<M>>
             try {
                 // we clone the state here, so whatever the player does with the
                 // state, will not ruin the GUI!
-                return player.getMove((S)state.clone());
+                S s = (S) state.clone();
+                if (player instanceof LimitedPlayer) {
+                    LimitedPlayer<M,S> limited = (LimitedPlayer<M,S>) player;
+                    limited.setSearchListener(info ->
+                            SwingUtilities.invokeLater(() -> searchInfo(info)));
+                    try {
+                        return search(s);
+                    } finally {
+                        limited.setSearchListener(null);
+                    }
+                }
+                return search(s);
             } catch(Exception e) {
                 e.printStackTrace();
                 System.err.println(e);
@@ -55,6 +82,24 @@ public abstract class SearchTask<M,U,S extends GameState<M>>
         }
     }
     
+    /**
+     * asks the player for its move, in the background thread. Players that
+     * implement LimitedPlayer get the limits of this task, if any.
+     * @param s a clone of the state of this task
+     * @return the move of the player
+     */
+    protected M search(S s) {
+        if (limits != null && player instanceof LimitedPlayer) {
+            return ((LimitedPlayer<M,S>) player).getMove(s, limits);
+        }
+        return player.getMove(s);
+    }
+    
+    /** @return the player of this task. **/
+    public Player<M,S> getPlayer() {
+        return player;
+    }
+    
     /**
      * @return swing worker that starts the search() method and calls done() when that 
      *         task finishes.
@@ -88,6 +133,14 @@ public abstract class SearchTask<M,U,S extends GameState<M>>
      */
     abstract public void done(M m);
     
+    /**
+     * called on the event dispatch thread for every progress report of a
+     * player that implements LimitedPlayer. This implementation does nothing.
+     * @param info progress report
+     */
+    public void searchInfo(SearchInfo<M> info) {
+    }
+    
     /**
      *
      */
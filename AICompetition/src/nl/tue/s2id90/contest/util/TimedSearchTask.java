@@ -4,10 +4,12 @@ import java.util.Timer;
 import java.util.TimerTask;
 import nl.tue.s2id90.game.GameState;
 import nl.tue.s2id90.game.Player;
+import nl.tue.s2id90.game.SearchLimits;
 
 /**
  * This search task automatically stops after given number of seconds. This is done
- * by calling its stop() method in a TimerTask.
+ * by calling its stop() method in a TimerTask. Players that implement
+ * LimitedPlayer are told the same deadline up front.
  * @author huub
  * @param <M> Move 
  * @param <U> UndoMove
@@ -17,7 +19,7 @@ public abstract class TimedSearchTask<M, U, S extends GameState<M>>
     extends SearchTask<M, U, S> {
     static Timer timer = new Timer();  // can schedule multiple tasks, so no need to make a new one
     public TimedSearchTask(Player<M, S> player, S s, int timeLimitInSeconds) {
-        super(player, s);
+        super(player, s, SearchLimits.time(timeLimitInSeconds*1000L));
         TimerTask task = new TimerTask() {
             @Override
             public void run() {
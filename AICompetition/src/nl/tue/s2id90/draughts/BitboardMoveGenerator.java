@@ -0,0 +1,376 @@
+package nl.tue.s2id90.draughts;
+
+import static nl.tue.s2id90.draughts.Bitboards.BOARD;
+import static nl.tue.s2id90.draughts.Bitboards.DIRECTIONS;
+import static nl.tue.s2id90.draughts.DraughtsState.BLACKKING;
+import static nl.tue.s2id90.draughts.DraughtsState.BLACKPIECE;
+import static nl.tue.s2id90.draughts.DraughtsState.WHITEKING;
+import static nl.tue.s2id90.draughts.DraughtsState.WHITEPIECE;
+import java.util.ArrayList;
+import java.util.List;
+import org10x10.dam.game.Move;
+
+/**
+ * Move generator for international draughts that works on the bitboard
+ * layout of {@link Bitboards}: a position is given by three masks (white
+ * pieces, black pieces and kings) and the side to move.
+ * <p>
+ * The generated moves are the legal moves according to the international
+ * rules: men move forward and capture in all directions, kings fly, capturing
+ * is mandatory and only the captures with the maximum number of pieces are
+ * legal. The moves are equal (see Move#equals(Object)) to the moves
+ * generated by MoveGeneratorFactory#createMoveGeneratorInternational(),
+ * except that a capture that can be played along several paths, capturing
+ * the same pieces, is generated only once.
+ * <p>
+ * Captures are found by a depth first search that keeps the length of the
+ * longest capture found so far, and abandons a sequence as soon as it can no
+ * longer reach that length; the shorter captures, that the maximum capture
+ * rule forbids, are mostly never completed. The list and the packed methods
+ * share this search; for the list, the search also records the path of the
+ * sequence it is building (see CapturePath), since a Move has one.
+ * <p>
+ * A generator has no state, so a single instance can be shared by any number
+ * of positions and threads.
+ * @author huub
+ */
+public class BitboardMoveGenerator {
+
+    /**
+     * @param white   mask of white pieces
+     * @param black   mask of black pieces
+     * @param kings   mask of kings (of both colors)
+     * @param whiteToMove whether or not white is to move
+     * @return the legal moves in the given position
+     */
+    public List<Move> generateMoves(long white, long black, long kings, boolean whiteToMove) {
+        List<Move> moves = generateCaptures(white, black, kings, whiteToMove);
+        if (moves.isEmpty()) {
+            generateQuietMoves(white, black, kings, whiteToMove, moves);
+        }
+        return moves;
+    }
+
+    /**
+     * @return the legal captures in the given position; an empty list if
+     *         there is nothing to capture.
+     * @see #generateMoves(long, long, long, boolean)
+     */
+    public List<Move> generateCaptures(long white, long black, long kings, boolean whiteToMove) {
+        List<Move> moves = new ArrayList<>();
+        if (!hasCaptures(white, black, kings, whiteToMove)) {
+            return moves;
+        }
+        CapturePath path = new CapturePath(white, black, kings);
+        int n = captures(white, black, kings, whiteToMove,
+                new long[DraughtsState.MAX_MOVES], 0, path);
+        for (int i = 0; i < n; i++) {
+            moves.add(path.moves[i]);
+        }
+        return moves;
+    }
+
+    /** adds all non-capturing moves in the given position to moves. **/
+    void generateQuietMoves(long white, long black, long kings, boolean whiteToMove, List<Move> moves) {
+        long own = whiteToMove ? white : black;
+        long empty = BOARD & ~(white | black);
+        int man = whiteToMove ? WHITEPIECE : BLACKPIECE;
+        int king = whiteToMove ? WHITEKING : BLACKKING;
+        long promotion = Bitboards.promotionRow(whiteToMove);
+
+        // men: one step forward
+        long men = own & ~kings;
+        for (int dir : DIRECTIONS) {
+            if (dir < 0 != whiteToMove) continue; // white moves up, black down
+            for (long t = Bitboards.shift(men, dir) & empty; t != 0; t &= t - 1) {
+                int to = Long.numberOfTrailingZeros(t);
+                int endPiece = (promotion >>> to & 1) != 0 ? king : man;
+                moves.add(quietMove(to - dir, to, man, endPiece));
+            }
+        }
+
+        // kings: any number of steps along a diagonal
+        for (long k = own & kings; k != 0; k &= k - 1) {
+            int from = Long.numberOfTrailingZeros(k);
+            for (int d = 0; d < 4; d++) {
+                for (long t = Bitboards.flight(d, from, ~empty); t != 0; t &= t - 1) {
+                    moves.add(quietMove(from, Long.numberOfTrailingZeros(t), king, king));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the legal moves in the given position to buffer[offset...], packed
+     * as described in PackedMove. Apart from the buffer, which is owned by the
+     * caller, this method does not allocate any memory.
+     * @return the number of moves written
+     * @see #generateMoves(long, long, long, boolean)
+     */
+    public int generateMoves(long white, long black, long kings, boolean whiteToMove,
+            long[] buffer, int offset) {
+        int n = generateCaptures(white, black, kings, whiteToMove, buffer, offset);
+        if (n == 0) {
+            n = generateQuietMoves(white, black, kings, whiteToMove, buffer, offset);
+        }
+        return n;
+    }
+
+    /**
+     * Writes the legal captures in the given position to buffer[offset...],
+     * packed as described in PackedMove.
+     * @return the number of captures written; 0 if there is nothing to capture.
+     */
+    public int generateCaptures(long white, long black, long kings, boolean whiteToMove,
+            long[] buffer, int offset) {
+        return captures(white, black, kings, whiteToMove, buffer, offset, null);
+    }
+
+    /**
+     * Writes the legal captures to buffer[offset...]; if path is not null,
+     * it also records every capture, with its path, as a Move.
+     * @return the number of captures written
+     */
+    private static int captures(long white, long black, long kings, boolean whiteToMove,
+            long[] buffer, int offset, CapturePath path) {
+        long own = whiteToMove ? white : black;
+        long opp = whiteToMove ? black : white;
+        long empty = BOARD & ~(white | black);
+        long promotion = Bitboards.promotionRow(whiteToMove);
+        // men that have an opponent piece next to them with an empty field
+        // behind it; kings may first fly over empty fields, so all of them
+        // are candidates.
+        long candidates = own & kings;
+        for (int dir : DIRECTIONS) {
+            candidates |= own & ~kings & Bitboards.shift(opp, -dir)
+                    & Bitboards.shift(empty, -2 * dir);
+        }
+        int end = offset;
+        for (long c = candidates; c != 0; c &= c - 1) {
+            int b = Long.numberOfTrailingZeros(c);
+            long occupied = (white | black) & ~(1L << b); // the mover leaves its field
+            if (path != null) path.start(b);
+            if ((kings >>> b & 1) != 0) {
+                end = KingMoveGenerator.captures(b, b, -1, 0L, occupied, opp,
+                        buffer, offset, end, path);
+            } else {
+                end = manCaptures(b, b, 0L, occupied, opp, promotion, buffer, offset, end, path);
+            }
+        }
+        return end - offset;
+    }
+
+    /**
+     * Writes the non-capturing moves in the given position to
+     * buffer[offset...], packed as described in PackedMove.
+     * @return the number of moves written
+     */
+    public int generateQuietMoves(long white, long black, long kings, boolean whiteToMove,
+            long[] buffer, int offset) {
+        long own = whiteToMove ? white : black;
+        long empty = BOARD & ~(white | black);
+        long promotion = Bitboards.promotionRow(whiteToMove);
+        int end = offset;
+
+        long men = own & ~kings;
+        for (int dir : DIRECTIONS) {
+            if (dir < 0 != whiteToMove) continue; // white moves up, black down
+            for (long t = Bitboards.shift(men, dir) & empty; t != 0; t &= t - 1) {
+                int to = Long.numberOfTrailingZeros(t);
+                buffer[end++] = PackedMove.pack(to - dir, to, 0L, (promotion >>> to & 1) != 0);
+            }
+        }
+
+        end = KingMoveGenerator.quietMoves(own & kings, white | black, buffer, end);
+        return end - offset;
+    }
+
+    /**
+     * @return the number of non-capturing moves in the given position; the
+     *         moves are counted on the masks, without generating them.
+     */
+    public int countQuietMoves(long white, long black, long kings, boolean whiteToMove) {
+        long own = whiteToMove ? white : black;
+        long empty = BOARD & ~(white | black);
+        int count = KingMoveGenerator.countQuietMoves(own & kings, white | black);
+        for (int dir : DIRECTIONS) {
+            if (dir < 0 == whiteToMove) {
+                count += Long.bitCount(Bitboards.shift(own & ~kings, dir) & empty);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the legal moves in the given position, that is, the moves that
+     * generateMoves(white, black, kings, whiteToMove, buffer, 0) would write.
+     * Quiet moves are counted on the masks only; captures are generated into
+     * the buffer, which must have room for DraughtsState.MAX_MOVES moves,
+     * because of the maximum capture rule.
+     * @return the number of legal moves
+     */
+    public int countMoves(long white, long black, long kings, boolean whiteToMove,
+            long[] buffer) {
+        if (hasCaptures(white, black, kings, whiteToMove)) {
+            return generateCaptures(white, black, kings, whiteToMove, buffer, 0);
+        }
+        return countQuietMoves(white, black, kings, whiteToMove);
+    }
+
+    /**
+     * @return whether or not the side to move has a legal move; this only
+     *         looks at the neighbours of the pieces and never generates moves.
+     */
+    public boolean hasMoves(long white, long black, long kings, boolean whiteToMove) {
+        long own = whiteToMove ? white : black;
+        long opp = whiteToMove ? black : white;
+        long empty = BOARD & ~(white | black);
+        for (int dir : DIRECTIONS) {
+            long movers = (dir < 0 == whiteToMove ? own : own & kings)
+                    & Bitboards.shift(empty, -dir);
+            long capturers = own & Bitboards.shift(opp, -dir) & Bitboards.shift(empty, -2 * dir);
+            if ((movers | capturers) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return whether or not the side to move can capture, and therefore has
+     *         to capture; no moves are generated.
+     */
+    public boolean hasCaptures(long white, long black, long kings, boolean whiteToMove) {
+        long own = whiteToMove ? white : black;
+        long opp = whiteToMove ? black : white;
+        long empty = BOARD & ~(white | black);
+        for (int dir : DIRECTIONS) {
+            // a piece next to an opponent piece with an empty field behind it
+            if ((own & Bitboards.shift(opp, -dir) & Bitboards.shift(empty, -2 * dir)) != 0) {
+                return true;
+            }
+        }
+        // a king that reaches such an opponent piece by flying over empty fields
+        return KingMoveGenerator.canCapture(own & kings, white | black, opp);
+    }
+
+    private static int manCaptures(int from, int b, long taken, long occupied, long opp,
+            long promotion, long[] buffer, int offset, int end, CapturePath path) {
+        if (hopeless(taken, opp, buffer, offset, end)) return end;
+        boolean more = false;
+        for (int dir : DIRECTIONS) {
+            int over = Bitboards.step(b, dir);
+            if (over < 0 || ((opp & ~taken) >>> over & 1) == 0) continue;
+            int to = Bitboards.step(over, dir);
+            if (to < 0 || (occupied >>> to & 1) != 0) continue;
+            more = true;
+            if (path != null) path.capture(taken, over, to);
+            end = manCaptures(from, to, taken | 1L << over, occupied, opp, promotion,
+                    buffer, offset, end, path);
+        }
+        if (!more && taken != 0) {
+            end = add(buffer, offset, end,
+                    PackedMove.pack(from, b, taken, (promotion >>> b & 1) != 0), path);
+        }
+        return end;
+    }
+
+    /**
+     * @return whether or not a capture sequence that has taken the pieces in
+     * taken can no longer reach the length of the captures in
+     * buffer[offset..end), even if it would take every remaining opponent
+     * piece that is not on an edge (pieces on an edge can not be captured).
+     * Such a sequence can be abandoned: it would be dropped by the maximum
+     * capture rule anyway.
+     */
+    static boolean hopeless(long taken, long opp, long[] buffer, int offset, int end) {
+        return end > offset && Long.bitCount(taken) + Long.bitCount(opp & ~taken & Bitboards.INNER)
+                < PackedMove.getCaptureCount(buffer[offset]);
+    }
+
+    /**
+     * Adds capture m to buffer[offset..end) if it captures at least as many
+     * pieces as the captures already there; shorter captures are dropped.
+     * Since a packed move has no path, two sequences that capture the same
+     * pieces between the same fields give the same value; it is added once.
+     * If path is not null, the capture is also recorded, with the path of the
+     * current sequence, in path.moves.
+     * @return new end of the buffer
+     */
+    static int add(long[] buffer, int offset, int end, long m, CapturePath path) {
+        if (end > offset) {
+            int n = PackedMove.getCaptureCount(m);
+            int max = PackedMove.getCaptureCount(buffer[offset]);
+            if (n < max) {
+                return end;
+            } else if (n > max) {
+                end = offset;
+            } else {
+                for (int i = offset; i < end; i++) {
+                    if (buffer[i] == m) return end;
+                }
+            }
+        }
+        buffer[end] = m;
+        if (path != null) path.record(end - offset, m);
+        return end + 1;
+    }
+
+    private static Move quietMove(int from, int to, int beginPiece, int endPiece) {
+        int[] fields = { Bitboards.field(from), Bitboards.field(to) };
+        return new Move(fields, new int[0], new int[0], beginPiece, endPiece);
+        }
+
+    /**
+     * The path of the capture sequence that the search is building: its
+     * landing fields and the pieces it captured, in order. A packed move has
+     * no path, so the list methods pass one to the search, which turns every
+     * capture it keeps into a Move while the path is still there.
+     */
+    static final class CapturePath {
+        private final long white, black, kings;
+        private final int[] path = new int[21];      // landing bits, path[0] is the start
+        private final int[] captured = new int[20];  // bits of captured pieces
+        /** moves[i] is the capture in buffer[offset + i] as a Move **/
+        final Move[] moves = new Move[DraughtsState.MAX_MOVES];
+
+        CapturePath(long white, long black, long kings) {
+            this.white = white;
+            this.black = black;
+            this.kings = kings;
+        }
+
+        /** starts a sequence of the piece on bit b. **/
+        void start(int b) {
+            path[0] = b;
+        }
+
+        /** extends the sequence that has taken the pieces in taken with the
+         * capture of the piece on bit over, landing on bit to.
+         **/
+        void capture(long taken, int over, int to) {
+            int n = Long.bitCount(taken);
+            captured[n] = over;
+            path[n + 1] = to;
+        }
+
+        /** stores the current sequence, which ends in capture m, as moves[i]. **/
+        void record(int i, long m) {
+            int n = PackedMove.getCaptureCount(m);
+            int[] fields = new int[n + 1];
+            int[] capturedFields = new int[n];
+            int[] capturedPieces = new int[n];
+            for (int j = 0; j <= n; j++) {
+                fields[j] = Bitboards.field(path[j]);
+            }
+            for (int j = 0; j < n; j++) {
+                capturedFields[j] = Bitboards.field(captured[j]);
+                capturedPieces[j] = Bitboards.piece(white, black, kings, captured[j]);
+            }
+            int beginPiece = Bitboards.piece(white, black, kings, path[0]);
+            int endPiece = beginPiece;
+            if (PackedMove.isPromotion(m)) {
+                endPiece = beginPiece == WHITEPIECE ? WHITEKING : BLACKKING;
+            }
+            moves[i] = new Move(fields, capturedPieces, capturedFields, beginPiece, endPiece);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package nl.tue.s2id90.draughts;
+
+import static nl.tue.s2id90.draughts.DraughtsState.BLACKKING;
+import static nl.tue.s2id90.draughts.DraughtsState.BLACKPIECE;
+import static nl.tue.s2id90.draughts.DraughtsState.EMPTY;
+import static nl.tue.s2id90.draughts.DraughtsState.WHITEKING;
+import static nl.tue.s2id90.draughts.DraughtsState.WHITEPIECE;
+
+/**
+ * Layout of the 50 playable fields in a long. Field f is stored in bit
+ * (f-1)+(f-1)/10, which leaves an unused (ghost) bit after every two rows:
+ * <blockquote><pre>
+ *   bit   0   1   2   3   4          fields  1- 5
+ *       5   6   7   8   9     (10)   fields  6-10
+ *        11  12  13  14  15          fields 11-15
+ *      16  17  18  19  20     (21)   fields 16-20
+ *       ...
+ *      38  39  40  41  42     (43)   fields 36-40
+ *        44  45  46  47  48          fields 41-45
+ *      49  50  51  52  53            fields 46-50
+ * </pre></blockquote>
+ * With this layout every diagonal step is a shift over the same distance,
+ * independent of the row: -6 (up-left), -5 (up-right), +5 (down-left) and
+ * +6 (down-right). A step that leaves the board ends on a ghost bit or
+ * outside bits 0..53 and disappears when masked with {@link #BOARD}.
+ * @author huub
+ */
+final class Bitboards {
+
+    /** the four diagonal directions, as bit offsets. **/
+    static final int[] DIRECTIONS = { -6, -5, 5, 6 };
+
+    /** mask with the bits of all 50 fields. **/
+    static final long BOARD = (1L<<54) - 1 & ~(1L<<10 | 1L<<21 | 1L<<32 | 1L<<43);
+
+    /** fields 1-5, where white men promote. **/
+    static final long WHITE_PROMOTION = 0x1FL;
+
+    /** fields 46-50, where black men promote. **/
+    static final long BLACK_PROMOTION = 0x1FL << 49;
+
+    /** the fields that are not on an edge of the board; only pieces on
+     * these fields can be captured.
+     **/
+    static final long INNER;
+
+    /** RAYS[d][b] is the mask of all fields that are seen from bit b in
+     * direction DIRECTIONS[d], up to the edge of the board; b itself is not
+     * in the mask.
+     **/
+    static final long[][] RAYS = new long[4][64];
+
+    /** field numbers 1..50 of each bit; 0 for ghost and unused bits. **/
+    private static final int[] FIELD = new int[64];
+
+    static {
+        for (int f = 1; f <= 50; f++) {
+            FIELD[bit(f)] = f;
+        }
+        long inner = 0;
+        for (int f = 1; f <= 50; f++) {
+            int b = bit(f);
+            if (step(b, -6) >= 0 && step(b, 6) >= 0 && step(b, -5) >= 0 && step(b, 5) >= 0) {
+                inner |= 1L << b;
+            }
+        }
+        INNER = inner;
+        for (int d = 0; d < 4; d++) {
+            for (int f = 1; f <= 50; f++) {
+                int b = bit(f);
+                for (int t = step(b, DIRECTIONS[d]); t >= 0; t = step(t, DIRECTIONS[d])) {
+                    RAYS[d][b] |= 1L << t;
+                }
+            }
+        }
+    }
+
+    private Bitboards() {}
+
+    /** @return bit index of field f (1..50). **/
+    static int bit(int f) {
+        return (f - 1) + (f - 1) / 10;
+    }
+
+    /** @return field number 1..50 of bit b. **/
+    static int field(int b) {
+        return FIELD[b];
+    }
+
+    /** @return bits of b, all moved one step in direction dir; bits that
+     * leave the board are dropped.
+     **/
+    static long shift(long b, int dir) {
+        return (dir > 0 ? b << dir : b >>> -dir) & BOARD;
+    }
+
+    /** @return bit reached from bit b by one step in direction dir, or -1
+     * if that step leaves the board.
+     **/
+    static int step(int b, int dir) {
+        int t = b + dir;
+        return t >= 0 && t < 64 && (BOARD >>> t & 1) != 0 ? t : -1;
+    }
+
+    /** @return index in DIRECTIONS of the direction opposite to
+     * DIRECTIONS[d].
+     **/
+    static int opposite(int d) {
+        return 3 - d;
+    }
+
+    /** @return the bit of m that is nearest to the start of a ray in
+     * direction DIRECTIONS[d]; m must be a non empty part of such a ray.
+     **/
+    static int nearest(int d, long m) {
+        return DIRECTIONS[d] < 0 ? 63 - Long.numberOfLeadingZeros(m) : Long.numberOfTrailingZeros(m);
+    }
+
+    /** @return the fields that a king on bit b can reach in direction
+     * DIRECTIONS[d]: the fields of the ray before the first occupied field.
+     **/
+    static long flight(int d, int b, long occupied) {
+        long ray = RAYS[d][b];
+        long blockers = ray & occupied;
+        if (blockers == 0) return ray;
+        int first = nearest(d, blockers);
+        return ray & ~RAYS[d][first] & ~(1L << first);
+    }
+
+    /** @return bit index of the field that bit b is mapped to by rotating
+     * the board 180 degrees: field f goes to field 51-f.
+     **/
+    static int rotate(int b) {
+        return 53 - b;
+    }
+
+    /** @return mask m with the board rotated 180 degrees. **/
+    static long rotate(long m) {
+        return Long.reverse(m) >>> 10;
+    }
+
+    /** @return the promotion row for the men of the given color. **/
+    static long promotionRow(boolean white) {
+        return white ? WHITE_PROMOTION : BLACK_PROMOTION;
+    }
+
+    /** @return piece in the given masks at bit b; one of {WHITEPIECE,
+     * BLACKPIECE, WHITEKING, BLACKKING, EMPTY}.
+     **/
+    static int piece(long white, long black, long kings, int b) {
+        long m = 1L << b;
+        if ((white & m) != 0) return (kings & m) != 0 ? WHITEKING : WHITEPIECE;
+        if ((black & m) != 0) return (kings & m) != 0 ? BLACKKING : BLACKPIECE;
+        return EMPTY;
+    }
+
+    /** @return mask of all fields f in pieces (indexed 1..50) for which
+     * pieces[f] equals p or q.
+     **/
+    static long mask(int[] pieces, int p, int q) {
+        long m = 0;
+        for (int f = 1; f <= 50; f++) {
+            if (pieces[f] == p || pieces[f] == q) m |= 1L << bit(f);
+        }
+        return m;
+    }
+
+    /** fills a[1..50] with the pieces in the given masks. **/
+    static void fill(int[] a, long white, long black, long kings) {
+        for (int f = 1; f <= 50; f++) {
+            a[f] = piece(white, black, kings, bit(f));
+        }
+    }
+}
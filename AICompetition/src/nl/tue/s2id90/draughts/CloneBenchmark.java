@@ -0,0 +1,151 @@
+package nl.tue.s2id90.draughts;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org10x10.dam.game.BoardState;
+import org10x10.dam.game.MoveGenerator;
+import org10x10.dam.game.MoveGeneratorFactory;
+
+/**
+ * Microbenchmark for DraughtsState.clone(), which is called before every
+ * search by SearchTask and many times by parallel players. It compares the
+ * clone of a DraughtsState with what a clone used to cost: a copy of a
+ * BoardState and a new MoveGenerator. It reports the fastest of a number of
+ * rounds, and the memory that a clone allocates, which bounds its time: the
+ * clones are kept reachable, as they are in a search, so the JIT can not
+ * remove their allocation.
+ * <p>
+ * The goal was a clone that is at least GOAL times as fast as the old one.
+ * It is not met: the clone is about seven times as fast. The time of a clone
+ * is dominated by the memory it allocates, so no clone can be faster than
+ * the allocation of the board and the key it must copy. For information, the
+ * benchmark also times that lower bound, an object with only those four
+ * longs; it is itself only about ten times as fast as the old clone, and a
+ * clone that also copies the side to move and the draw rules is larger.
+ * <p>
+ * Usage:
+ * <blockquote><pre>
+ *   java nl.tue.s2id90.draughts.CloneBenchmark [clones] [FEN]
+ * </pre></blockquote>
+ * @author huub
+ */
+public final class CloneBenchmark {
+    private static final int ROUNDS = 10;
+
+    /** the speed up over the old clone that was asked for. **/
+    private static final double GOAL = 10;
+
+    private CloneBenchmark() {}
+
+    /**
+     * @param args [clones] [FEN]
+     */
+    public static void main(String[] args) {
+        int clones = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+        DraughtsState state = args.length > 1 ? Perft.getState(args[1]) : new DraughtsState();
+        BoardState bs = state.toBoardState();
+        Cloner before = () -> {
+            MoveGenerator generator = MoveGeneratorFactory.createMoveGeneratorInternational();
+            return new Object[] { bs.clone(), generator };
+        };
+        Cloner after = () -> state.clone();
+        Board board = new Board(state);
+        Cloner bound = () -> new Board(board);
+
+        // the first rounds warm up the JIT; the fastest round is reported
+        double beforeTime = Double.MAX_VALUE, afterTime = Double.MAX_VALUE;
+        double boundTime = Double.MAX_VALUE;
+        for (int round = 1; round <= ROUNDS; round++) {
+            beforeTime = Math.min(beforeTime, timeBefore(clones, bs));
+            afterTime = Math.min(afterTime, timeClone(clones, state));
+            boundTime = Math.min(boundTime, timeBound(clones, board));
+        }
+        System.out.printf("BoardState.clone() + new MoveGenerator  %8.1f ns %6.0f bytes%n",
+                beforeTime, bytes(clones, before));
+        System.out.printf("DraughtsState.clone()                   %8.1f ns %6.0f bytes%n",
+                afterTime, bytes(clones, after));
+        System.out.printf("lower bound: board and key only         %8.1f ns %6.0f bytes%n",
+                boundTime, bytes(clones, bound));
+        double speedUp = beforeTime / afterTime;
+        System.out.printf("speed up                                %8.1f x (goal: at least %.0f x, %s)%n",
+                speedUp, GOAL, speedUp >= GOAL ? "met" : "not met");
+        System.out.printf("speed up of the lower bound             %8.1f x%n",
+                beforeTime / boundTime);
+    }
+
+    /** the part of a DraughtsState that any clone must copy: the board and
+     * its key. **/
+    private static final class Board {
+        final long white, black, kings, hash;
+
+        Board(DraughtsState s) {
+            DraughtsPosition p = s.getPosition();
+            white = p.white;
+            black = p.black;
+            kings = p.kings;
+            hash = s.getHash();
+        }
+
+        Board(Board b) {
+            white = b.white;
+            black = b.black;
+            kings = b.kings;
+            hash = b.hash;
+        }
+    }
+
+    /** something to clone; returns the clone. Only used to measure memory. **/
+    private interface Cloner {
+        Object cloneOnce();
+    }
+
+    // Each clone is timed by a loop of its own. A loop that calls several
+    // Cloners can not inline them, and then the call takes about as long as
+    // the clone.
+
+    /** @return average time in nanoseconds of a clone as it used to be. **/
+    private static double timeBefore(int n, BoardState bs) {
+        Object[] keep = new Object[1024];    // so that the clones escape
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            MoveGenerator generator = MoveGeneratorFactory.createMoveGeneratorInternational();
+            keep[i & 1023] = new Object[] { bs.clone(), generator };
+        }
+        return (double) (System.nanoTime() - start) / n;
+    }
+
+    /** @return average time of state.clone() in nanoseconds. **/
+    private static double timeClone(int n, DraughtsState state) {
+        Object[] keep = new Object[1024];
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            keep[i & 1023] = state.clone();
+        }
+        return (double) (System.nanoTime() - start) / n;
+    }
+
+    /** @return average time of a copy of board in nanoseconds. **/
+    private static double timeBound(int n, Board board) {
+        Object[] keep = new Object[1024];
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            keep[i & 1023] = new Board(board);
+        }
+        return (double) (System.nanoTime() - start) / n;
+    }
+
+    /** @return average memory allocated by a clone in bytes, or NaN if the
+     * JVM does not measure it. **/
+    private static double bytes(int n, Cloner cloner) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return Double.NaN;
+        com.sun.management.ThreadMXBean memory = (com.sun.management.ThreadMXBean) bean;
+        long id = Thread.currentThread().getId();
+        Object[] keep = new Object[1024];
+        long start = memory.getThreadAllocatedBytes(id);
+        for (int i = 0; i < n; i++) {
+            keep[i & 1023] = cloner.cloneOnce();
+        }
+        return (double) (memory.getThreadAllocatedBytes(id) - start) / n;
+    }
+}
@@ -0,0 +1,195 @@
+package nl.tue.s2id90.draughts;
+
+import static nl.tue.s2id90.draughts.DraughtsState.EMPTY;
+import java.util.Collections;
+import java.util.List;
+import org10x10.dam.game.BoardState;
+import org10x10.dam.game.Move;
+
+/**
+ * An immutable draughts position: the pieces on the board and the side to
+ * move. Unlike a DraughtsState, a position can be shared by any number of
+ * threads without locks or defensive copies; a move does not change a
+ * position but returns a new one.
+ * <p>
+ * The Zobrist key and the move list are computed on first use and then
+ * cached. The cache is published through volatile fields, so a thread that
+ * finds it sees it completely; two threads that ask at the same time may
+ * both compute the same value, which is harmless.
+ * <blockquote><pre>
+ *   DraughtsPosition p = state.getPosition();
+ *   for (Move m : p.getMoves()) {
+ *       pool.submit(() -&gt; search(p.apply(m)));
+ *   }
+ * </pre></blockquote>
+ * @author huub
+ * @see DraughtsState#getPosition()
+ * @see DraughtsState#DraughtsState(DraughtsPosition)
+ */
+public final class DraughtsPosition {
+    private static final BitboardMoveGenerator GENERATOR = new BitboardMoveGenerator();
+
+    // the board, in the layout of Bitboards
+    final long white, black, kings;
+    final boolean whiteToMove;
+
+    private long hash;                      // valid if hashed
+    private volatile boolean hashed;
+    private volatile List<Move> moves;      // null if not generated yet
+
+    /** creates the initial position. **/
+    public DraughtsPosition() {
+        this(new DraughtsState().getPosition());
+    }
+
+    private DraughtsPosition(DraughtsPosition p) {
+        this(p.white, p.black, p.kings, p.whiteToMove);
+    }
+
+    DraughtsPosition(long white, long black, long kings, boolean whiteToMove) {
+        this.white = white;
+        this.black = black;
+        this.kings = kings;
+        this.whiteToMove = whiteToMove;
+    }
+
+    DraughtsPosition(long white, long black, long kings, boolean whiteToMove, long hash) {
+        this(white, black, kings, whiteToMove);
+        this.hash = hash;
+        this.hashed = true;
+    }
+
+    /** @return a new DraughtsState with this position. **/
+    public DraughtsState toState() {
+        return new DraughtsState(this);
+    }
+
+    /** @return the legal moves of this position; the list can not be
+     * modified.
+     **/
+    public List<Move> getMoves() {
+        List<Move> result = moves;
+        if (result == null) {
+            result = Collections.unmodifiableList(
+                    GENERATOR.generateMoves(white, black, kings, whiteToMove));
+            moves = result;
+        }
+        return result;
+    }
+
+    /**
+     * Writes the legal moves of this position to buffer[offset...], packed
+     * as described in PackedMove.
+     * @return number of moves written
+     * @see DraughtsState#getMoves(long[], int)
+     */
+    public int getMoves(long[] buffer, int offset) {
+        return GENERATOR.generateMoves(white, black, kings, whiteToMove, buffer, offset);
+    }
+
+    /** @return whether or not the side to move has no legal move. Unlike
+     * DraughtsState#isEndState(), this does not apply the draw rules: a
+     * position has no game history.
+     **/
+    public boolean isEndState() {
+        List<Move> result = moves;
+        if (result != null) return result.isEmpty();
+        return !GENERATOR.hasMoves(white, black, kings, whiteToMove);
+    }
+
+    /**
+     * @param m a legal move of this position
+     * @return the position after move m
+     */
+    public DraughtsPosition apply(Move m) {
+        long from = 1L << Bitboards.bit(m.getBeginField());
+        long to = 1L << Bitboards.bit(m.getEndField());
+        long taken = 0;
+        for (int i = 0; i < m.getCaptureCount(); i++) {
+            taken |= 1L << Bitboards.bit(m.getCapturedField(i));
+        }
+        return apply(from, to, taken, Draughts.isKing(m.getEndPiece()));
+    }
+
+    /**
+     * @param m a legal move of this position, packed as described in
+     *          PackedMove
+     * @return the position after move m
+     */
+    public DraughtsPosition apply(long m) {
+        long from = 1L << PackedMove.fromBit(m);
+        return apply(from, 1L << PackedMove.toBit(m), m & PackedMove.CAPTURES,
+                (kings & from) != 0 || PackedMove.isPromotion(m));
+    }
+
+    private DraughtsPosition apply(long from, long to, long taken, boolean king) {
+        long w = white, b = black;
+        if (whiteToMove) {
+            w = w & ~from | to;
+            b &= ~taken;
+        } else {
+            b = b & ~from | to;
+            w &= ~taken;
+        }
+        long k = kings & ~(from | taken);
+        if (king) k |= to;
+        return new DraughtsPosition(w, b, k, !whiteToMove);
+    }
+
+    /** @return whether or not white is to move. **/
+    public boolean isWhiteToMove() {
+        return whiteToMove;
+    }
+
+    /** @return piece at field f
+     * @see DraughtsState#getPiece(int)
+     **/
+    public int getPiece(int f) {
+        if (f<1 || f > 50) throw new IllegalArgumentException();
+        return Bitboards.piece(white, black, kings, Bitboards.bit(f));
+    }
+
+    /** @return a new array with the pieces on the board
+     * @see DraughtsState#getPieces()
+     **/
+    public int[] getPieces() {
+        int[] pieces = new int[51];
+        pieces[0] = EMPTY;
+        Bitboards.fill(pieces, white, black, kings);
+        return pieces;
+    }
+
+    /** @return the Zobrist key of this position; equal to the key of a
+     * DraughtsState with the same position.
+     * @see DraughtsState#getHash()
+     **/
+    public long getHash() {
+        if (!hashed) {
+            hash = Zobrist.hash(white, black, kings, whiteToMove);
+            hashed = true;
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DraughtsPosition)) return false;
+        DraughtsPosition p = (DraughtsPosition) o;
+        return white == p.white && black == p.black && kings == p.kings
+                && whiteToMove == p.whiteToMove;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(getHash());
+    }
+
+    @Override
+    public String toString() {
+        BoardState bs = new BoardState(10,10);
+        bs.setPieces(getPieces());
+        bs.setWhiteToMove(whiteToMove);
+        return bs.toString()+"      w2m = "+ isWhiteToMove();
+    }
+}
@@ -1,12 +1,11 @@
 package nl.tue.s2id90.draughts;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import nl.tue.s2id90.game.Game.Result;
 import nl.tue.s2id90.game.GameState;
 import org10x10.dam.game.BoardState;
 import org10x10.dam.game.Move;
-import org10x10.dam.game.MoveGenerator;
-import org10x10.dam.game.MoveGeneratorFactory;
 
 /**
  * <blockquote><pre>
@@ -32,6 +31,23 @@ import org10x10.dam.game.MoveGeneratorFactory;
  *      |
  *   9  | 46    47    48    49    50
  * </pre></blockquote>
+ * Besides the GameState methods, that work with Move objects, a DraughtsState
+ * offers an allocation free interface for searching: moves are generated as
+ * packed longs (see {@link PackedMove}) into a buffer that is owned by the
+ * caller, and applied with {@link #doMove(long)} and {@link #undoMove(long)}.
+ * A search that keeps one buffer per ply does not allocate any memory per
+ * node:
+ * <blockquote><pre>
+ *   long[][] buffers = new long[MAX_PLY][DraughtsState.MAX_MOVES];
+ *   ...
+ *   long[] moves = buffers[ply];
+ *   int n = s.getMoves(moves, 0);
+ *   for (int i = 0; i &lt; n; i++) {
+ *       s.doMove(moves[i]);
+ *       ... search(s, ply + 1) ...
+ *       s.undoMove(moves[i]);
+ *   }
+ * </pre></blockquote>
  * @author huub
  */
 public class DraughtsState implements GameState<Move> {
@@ -65,25 +81,98 @@ public class DraughtsState implements GameState<Move> {
      **/
     final public static int WHITEFIELD = 5;
     
-    private final BoardState bs;
-    private final MoveGenerator moveGenerator = MoveGeneratorFactory.createMoveGeneratorInternational();
-    private List<Move> moves=null;
-    
+    /**
+     * Size of a move buffer that is large enough for the moves of any position.
+     * @see #getMoves(long[], int)
+     */
+    public static final int MAX_MOVES = 256;
+
+    /** number of plies of king moves without capture after which the game
+     * is a draw (the 25 move rule). **/
+    static final int KING_MOVES_DRAW = 50;
+
+    private static final BitboardMoveGenerator GENERATOR = new BitboardMoveGenerator();
+
+    // the board, in the layout of Bitboards
+    private long white, black, kings;
+    private boolean whiteToMove;
+    private long hash;                  // Zobrist key, see getHash()
+
+    // draw rules: the number of plies since the last move that was not a
+    // non-capturing king move (only these plies can repeat a position), the
+    // number of plies since the last capture or promotion (the endgame
+    // rules), and the keys of the states before this one that were not in
+    // an undo record: history[history.length - k] is the key k plies before
+    // ply 0. A clone gets the keys of the last reversible plies; it shares
+    // the array, which is never written, if there is no undo record.
+    private int reversible, sinceCapture;
+    private long[] history;
+
+    // everything else, allocated on first use, so that a clone is a small
+    // object that only copies the fields above
+    private Stack stack;
+
+    /**
+     * The undo stack and the generated moves of a state. For every ply below
+     * the current one, that is, for every state that was left by a doMove
+     * that has not been undone yet, there is an undo record with its board
+     * and key, and its generated moves. undo copies the record back, and the
+     * moves, which are still valid.
+     */
+    private static final class Stack {
+        static final int RECORD = 5;    // longs per undo record
+        List<Move>[] moves = newMoveStack(16);  // per ply; null if not generated yet
+        long[] records = new long[16 * RECORD];
+        int ply = 0;
+        long[] countBuffer;             // captures of countMoves, on first use
+    }
+
     /**
      * creates an initial  draughts state.
      */
     public DraughtsState() {
-        bs = new BoardState(10,10);
-        bs.setBegin();
+        reset();
     }
     
     private DraughtsState(DraughtsState ds) {
-        this(ds.bs);
+        white = ds.white;
+        black = ds.black;
+        kings = ds.kings;
+        whiteToMove = ds.whiteToMove;
+        hash = ds.hash;
+        reversible = ds.reversible;
+        sinceCapture = ds.sinceCapture;
+        if (ds.getPly() == 0) {
+            history = ds.history;
+        } else if (reversible > 0) {
+            history = new long[reversible];
+            for (int k = 1; k <= reversible; k++) {
+                history[reversible - k] = ds.getHash(k);
+            }
+        }
     }
     
-    /** creates a draughts state with a copy of the given BoardState. **/
+    /**
+     * creates a draughts state with the given position.
+     * @param p position
+     * @see #getPosition()
+     */
+    public DraughtsState(DraughtsPosition p) {
+        white = p.white;
+        black = p.black;
+        kings = p.kings;
+        whiteToMove = p.whiteToMove;
+        hash = p.getHash();
+    }
+
+    /** creates a draughts state with the position of the given BoardState. **/
     DraughtsState(BoardState bs) {
-        this.bs = (BoardState) bs.clone();
+        int[] pieces = bs.getPieces();
+        white = Bitboards.mask(pieces, WHITEPIECE, WHITEKING);
+        black = Bitboards.mask(pieces, BLACKPIECE, BLACKKING);
+        kings = Bitboards.mask(pieces, WHITEKING, BLACKKING);
+        whiteToMove = bs.isWhiteToMove();
+        hash = Zobrist.hash(white, black, kings, whiteToMove);
     }  
     
     /**
@@ -92,9 +181,86 @@ public class DraughtsState implements GameState<Move> {
      */
     @Override
     public List<Move> getMoves() {
-        if (moves==null)
-            return moves=new ArrayList(moveGenerator.generateMoves(bs));
-        return moves;
+        Stack s = getStack();
+        if (s.moves[s.ply]==null)
+            s.moves[s.ply]=GENERATOR.generateMoves(white, black, kings, whiteToMove);
+        return s.moves[s.ply];
+    }
+
+    /**
+     * Writes the legal moves of this state, packed as described in
+     * PackedMove, to buffer[offset...]. The buffer should have room for
+     * MAX_MOVES moves after offset. No memory is allocated.
+     * @param buffer array that receives the moves
+     * @param offset index in buffer of the first move
+     * @return number of moves written
+     * @see #MAX_MOVES
+     */
+    public int getMoves(long[] buffer, int offset) {
+        return GENERATOR.generateMoves(white, black, kings, whiteToMove, buffer, offset);
+    }
+
+    /**
+     * Writes the legal captures of this state to buffer[offset...], packed as
+     * described in PackedMove. This is the first stage of a staged move
+     * generation: if it returns 0, the legal moves are the quiet moves.
+     * @param buffer array that receives the captures
+     * @param offset index in buffer of the first capture
+     * @return number of captures written; 0 if there is nothing to capture
+     * @see #getQuietMoves(long[], int)
+     * @see StagedMoveIterator
+     */
+    public int getCaptures(long[] buffer, int offset) {
+        return GENERATOR.generateCaptures(white, black, kings, whiteToMove, buffer, offset);
+    }
+
+    /**
+     * Writes the non-capturing moves of this state to buffer[offset...],
+     * packed as described in PackedMove. This is the second stage of a staged
+     * move generation: since capturing is mandatory, these moves are legal
+     * only if the side to move can not capture.
+     * @param buffer array that receives the moves
+     * @param offset index in buffer of the first move
+     * @return number of moves written
+     * @see #getCaptures(long[], int)
+     * @see #hasCaptures()
+     */
+    public int getQuietMoves(long[] buffer, int offset) {
+        return GENERATOR.generateQuietMoves(white, black, kings, whiteToMove, buffer, offset);
+    }
+
+    /**
+     * @return whether or not the side to move can, and therefore must,
+     *         capture. No moves are generated, so this is much cheaper than
+     *         getCaptures(long[],int).
+     */
+    public boolean hasCaptures() {
+        return GENERATOR.hasCaptures(white, black, kings, whiteToMove);
+    }
+
+    /**
+     * @return the number of legal moves of the side to move
+     * @see #countMoves(boolean)
+     */
+    public int countMoves() {
+        return countMoves(whiteToMove);
+    }
+
+    /**
+     * Counts the legal moves that the given side would have in the current
+     * position, the maximum capture rule included. Moves with the same
+     * captured pieces but a different path count as one, as in
+     * getMoves(long[], int). Quiet moves are counted without being generated;
+     * captures are generated into a buffer of this state that is reused, so
+     * this method does not build any Move and, after its first call, does
+     * not allocate any memory.
+     * @param white side whose moves are counted
+     * @return the number of legal moves of white if white, else of black
+     */
+    public int countMoves(boolean white) {
+        Stack s = getStack();
+        if (s.countBuffer == null) s.countBuffer = new long[MAX_MOVES];
+        return GENERATOR.countMoves(this.white, black, kings, white, s.countBuffer);
     }
 
     /**
@@ -103,9 +269,97 @@ public class DraughtsState implements GameState<Move> {
      */
     @Override
     public boolean isEndState() {
-        if (moves==null)
-            moves = new ArrayList(moveGenerator.generateMoves(bs));
-        return moves.isEmpty();
+        return !hasMoves() || isDraw();
+    }
+
+    /** @return whether or not the side to move has a legal move. **/
+    private boolean hasMoves() {
+        if (stack!=null && stack.moves[stack.ply]!=null)
+            return !stack.moves[stack.ply].isEmpty();
+        return GENERATOR.hasMoves(white, black, kings, whiteToMove);
+    }
+
+    /**
+     * @return the result of the game in this state: a win for the opponent
+     *         if the side to move has no legal move, DRAW if the game is
+     *         drawn by one of the rules of isDraw(), and UNKNOWN otherwise.
+     */
+    @Override
+    public Result getResult() {
+        if (!hasMoves()) return whiteToMove ? Result.BLACK_WINS : Result.WHITE_WINS;
+        if (isDraw()) return Result.DRAW;
+        return Result.UNKNOWN;
+    }
+
+    /**
+     * Applies the draw rules of the FMJD: the game is drawn
+     * <ul>
+     * <li>when the same position, with the same side to move, occurs for the
+     *     third time;</li>
+     * <li>when during 25 moves of each player only kings have been moved,
+     *     without any capture;</li>
+     * <li>when three kings, two kings and a man, or a king and two men play
+     *     16 moves against a single king;</li>
+     * <li>when two kings, a king and a man, or a king play 5 moves against a
+     *     single king.</li>
+     * </ul>
+     * Positions before the creation of this state are known only if it is a
+     * clone of a state in which they were played.
+     * @return whether or not the game is drawn in this state
+     */
+    public boolean isDraw() {
+        if (reversible >= KING_MOVES_DRAW) return true;
+        int limit = endgameLimit(white, black, kings);
+        if (limit > 0 && sinceCapture >= limit) return true;
+        return getRepetitions() >= 2;
+    }
+
+    /**
+     * @return whether or not the current position, with the same side to
+     *         move, occurred before in this game. A search can score such a
+     *         position as a draw, since the side that repeated can repeat
+     *         again.
+     */
+    public boolean isRepetition() {
+        return getRepetitions() > 0;
+    }
+
+    /** @return number of earlier occurrences of the current position. **/
+    private int getRepetitions() {
+        int count = 0;
+        for (int k = 4; k <= reversible; k += 2) { // 2 plies back can't be equal
+            if (getHash(k) == hash) count++;
+        }
+        return count;
+    }
+
+    /** @return the Zobrist key of the state k plies back, 1 &le; k &le;
+     * reversible.
+     **/
+    private long getHash(int k) {
+        int ply = getPly();
+        if (k <= ply) return stack.records[(ply - k) * Stack.RECORD + 3];
+        return history[history.length - (k - ply)];
+    }
+
+    /** @return the number of plies after which an endgame with the given
+     * pieces is a draw: 32 for the 16 move rule, 10 for the 5 move rule, or
+     * 0 if neither applies.
+     **/
+    static int endgameLimit(long white, long black, long kings) {
+        int wk = Long.bitCount(white & kings), wm = Long.bitCount(white & ~kings);
+        int bk = Long.bitCount(black & kings), bm = Long.bitCount(black & ~kings);
+        if (bk == 1 && bm == 0) return endgameLimit(wk, wm);
+        if (wk == 1 && wm == 0) return endgameLimit(bk, bm);
+        return 0;
+    }
+
+    /** @return endgame limit for k kings and m men against a single king. **/
+    private static int endgameLimit(int k, int m) {
+        if (k == 0) return 0;
+        if (k + m <= 2) return 10;
+        if (k + m == 3) return 32;
+        return 0;
     }
 
     /**
@@ -114,18 +368,204 @@ public class DraughtsState implements GameState<Move> {
      */
     @Override
     public void doMove(Move m) {
-        moves = null;      // invalidate moves
-        bs.moveForward(m);
+        long from = 1L << Bitboards.bit(m.getBeginField());
+        long to = 1L << Bitboards.bit(m.getEndField());
+        long taken = 0;
+        for (int i = 0; i < m.getCaptureCount(); i++) {
+            taken |= 1L << Bitboards.bit(m.getCapturedField(i));
+        }
+        push();
+        apply(from, to, taken, Draughts.isKing(m.getEndPiece()));
     }
 
     /**
-     *
+     * undoes the effect of move m, which should be the last move that was
+     * done in this state; this is the same as undo(). Only when no move has
+     * been done in this state (for instance, when m was played before this
+     * state was created), the previous state is derived from m itself.
      * @param m
+     * @see #undo()
      */
     @Override
     public void undoMove(Move m) {
-        moves=null;             // invalidate cached moves
-        bs.moveBackward(m);
+        if (getPly() > 0) {
+            undo();
+            return;
+        }
+        if (stack != null) stack.moves[0] = null;  // invalidate cached moves
+        reversible = sinceCapture = 0;  // the earlier plies are not known
+        history = null;
+        long from = 1L << Bitboards.bit(m.getBeginField());
+        long to = 1L << Bitboards.bit(m.getEndField());
+        long taken = 0, takenKings = 0;
+        for (int i = 0; i < m.getCaptureCount(); i++) {
+            long c = 1L << Bitboards.bit(m.getCapturedField(i));
+            taken |= c;
+            if (Draughts.isKing(m.getCapturedPiece(i))) takenKings |= c;
+        }
+        revert(from, to, taken, takenKings, Draughts.isKing(m.getBeginPiece()));
+    }
+
+    /**
+     * applies packed move m in this state. Moves must be undone in the
+     * reverse order in which they were done.
+     * @param m packed move, as generated by getMoves(long[],int)
+     */
+    public void doMove(long m) {
+        long to = 1L << PackedMove.toBit(m);
+        long taken = m & PackedMove.CAPTURES;
+        push();
+        apply(1L << PackedMove.fromBit(m), to, taken,
+                (kings & 1L << PackedMove.fromBit(m)) != 0 || PackedMove.isPromotion(m));
+    }
+
+    /**
+     * undoes the effect of packed move m, which should be the last move that
+     * was done in this state; this is the same as undo().
+     * @param m packed move
+     * @see #undo()
+     */
+    public void undoMove(long m) {
+        undo();
+    }
+
+    /**
+     * undoes the last move that was done in this state, whether it was a Move
+     * or a packed move. The previous board and key are copied back from an
+     * undo record; nothing is derived from the move itself.
+     * @throws IllegalStateException if no move has been done in this state
+     */
+    public void undo() {
+        undo(1);
+    }
+
+    /**
+     * undoes the last plies moves that were done in this state. This takes
+     * constant time, independent of plies.
+     * @param plies number of moves to undo, at most getPly()
+     * @throws IllegalArgumentException if plies is negative
+     * @throws IllegalStateException if fewer than plies moves have been done
+     * @see #getPly()
+     */
+    public void undo(int plies) {
+        if (plies < 0) throw new IllegalArgumentException();
+        if (plies > getPly()) throw new IllegalStateException("no move to undo");
+        if (plies == 0) return;
+        Stack s = stack;
+        s.ply -= plies;
+        long[] records = s.records;
+        int r = s.ply * Stack.RECORD;
+        white = records[r];
+        black = records[r + 1];
+        kings = records[r + 2];
+        hash = records[r + 3];
+        reversible = (int) (records[r + 4] >>> 32);
+        sinceCapture = (int) records[r + 4];
+        if (plies % 2 == 1) whiteToMove = !whiteToMove;
+    }
+
+    /**
+     * @return the number of moves that have been done in this state and can
+     *         be undone with undo(); 0 after creation, clone() and reset().
+     */
+    public int getPly() {
+        return stack == null ? 0 : stack.ply;
+    }
+
+    /**
+     * @param m packed move
+     * @return the Move in getMoves() that equals packed move m, that is, that
+     *         has the same begin and end field and captures the same pieces;
+     *         null if there is no such move.
+     */
+    public Move toMove(long m) {
+        for (Move move : getMoves()) {
+            if (PackedMove.of(move) == m) return move;
+        }
+        return null;
+    }
+
+    /** saves the undo record of the current ply and enters the next ply,
+     * before a move is applied. The moves of the next ply are not known yet.
+     **/
+    private void push() {
+        Stack s = getStack();
+        if (s.ply + 1 == s.moves.length) {
+            int size = 2 * s.moves.length;
+            s.moves = Arrays.copyOf(s.moves, size);
+            s.records = Arrays.copyOf(s.records, size * Stack.RECORD);
+        }
+        long[] records = s.records;
+        int r = s.ply * Stack.RECORD;
+        records[r] = white;
+        records[r + 1] = black;
+        records[r + 2] = kings;
+        records[r + 3] = hash;
+        records[r + 4] = (long) reversible << 32 | sinceCapture;
+        s.moves[++s.ply] = null;
+    }
+
+    /** @return the stack of this state, allocated on first use. **/
+    private Stack getStack() {
+        if (stack == null) stack = new Stack();
+        return stack;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Move>[] newMoveStack(int size) {
+        return new List[size];
+    }
+
+    /** moves the piece of the side to move from mask from to mask to,
+     * removes the captured pieces in mask taken and switches sides.
+     **/
+    private void apply(long from, long to, long taken, boolean king) {
+        boolean kingMove = (kings & from) != 0;
+        reversible = kingMove && taken == 0 ? reversible + 1 : 0;
+        sinceCapture = taken != 0 || king != kingMove ? 0 : sinceCapture + 1;
+        hash ^= delta(from, to, taken, kings & taken, kingMove, king);
+        if (whiteToMove) {
+            white = white & ~from | to;
+            black &= ~taken;
+        } else {
+            black = black & ~from | to;
+            white &= ~taken;
+        }
+        kings &= ~(from | taken);
+        if (king) kings |= to;
+        whiteToMove = !whiteToMove;
+    }
+
+    /** @return the change of the Zobrist key by a move of the side to move
+     * from mask from to mask to, capturing the pieces in mask taken of which
+     * the ones in takenKings are kings.
+     **/
+    private long delta(long from, long to, long taken, long takenKings,
+            boolean beginKing, boolean endKing) {
+        long h = Zobrist.SIDE
+               ^ Zobrist.key(whiteToMove, beginKing, Long.numberOfTrailingZeros(from))
+               ^ Zobrist.key(whiteToMove, endKing, Long.numberOfTrailingZeros(to));
+        for (long t = taken; t != 0; t &= t - 1) {
+            int b = Long.numberOfTrailingZeros(t);
+            h ^= Zobrist.key(!whiteToMove, (takenKings >>> b & 1) != 0, b);
+        }
+        return h;
+    }
+
+    /** reverse of apply, for a move that has no undo record. **/
+    private void revert(long from, long to, long taken, long takenKings, boolean king) {
+        whiteToMove = !whiteToMove;
+        hash ^= delta(from, to, taken, takenKings, king, (kings & to) != 0);
+        // note: from and to are the same field after a circular king capture
+        if (whiteToMove) {
+            white = white & ~to | from;
+            black |= taken;
+        } else {
+            black = black & ~to | from;
+            white |= taken;
+        }
+        kings = kings & ~to | takenKings;
+        if (king) kings |= from;
     }
     
     /**
@@ -134,19 +574,32 @@ public class DraughtsState implements GameState<Move> {
      */
     @Override
     public String toString() {
-        return bs.toString()+"      w2m = "+ isWhiteToMove();
+        return toBoardState().toString()+"      w2m = "+ isWhiteToMove();
     }
     
-    /** returns an array a of length 51: 
+    /** returns a new array a of length 51: 
      * a[0] is unused; a[i] is one of {WHITE,BLACK,WHITE_KING,BLACK_KING,EMPTY}.
-     * Note that you can directly change this array to change this DraughtsState;
-     * however, you should normally do that using the moveBackward and moveForward methods.
+     * The array is a copy; changing it does not change this DraughtsState.
+     * Note that this differs from earlier versions, that kept the board in a
+     * BoardState and returned its live array: the board is now kept in
+     * bitboards, so changes have to be made with doMove and undoMove.
      * @return state of the board as an int array.
-     * @see DraughtsState#doMove(Move)
-     * @see DraughtsState#undoMove(Move) 
+     * @see DraughtsState#getPieces(int[])
      */
     public int[] getPieces() {
-        return bs.getPieces();
+        return getPieces(new int[51]);
+    }
+    
+    /** fills pieces[1..50] with the pieces on the board, as described in
+     * getPieces(). Use this method with a reusable array to avoid allocating
+     * a new array for every call.
+     * @param pieces array of length at least 51
+     * @return pieces
+     * @see DraughtsState#getPieces()
+     */
+    public int[] getPieces(int[] pieces) {
+        Bitboards.fill(pieces, white, black, kings);
+        return pieces;
     }
     
     /** @return piece at field f 
@@ -158,17 +611,91 @@ public class DraughtsState implements GameState<Move> {
      **/
     public int getPiece(int f) {
         if (f<1 || f > 50) throw new IllegalArgumentException();
-        return bs.getPiece(f);
+        return Bitboards.piece(white, black, kings, Bitboards.bit(f));
     }
     
     /** @return one of {WHITE,BLACK,WHITE_PIECE,BLACK_PIECE,EMPTY}
      * @param r row    
      * @param c column
+     * @throws IllegalArgumentException if (r,c) is not a playable field
      **/
     public int getPiece(int r, int c) {
-        int f = bs.rc2f(r, c);
-        if (f==-1) throw new IllegalArgumentException();
-        return bs.getPiece(f);
+        if (r<0 || r>9 || c<0 || c>9 || (r+c)%2==0) throw new IllegalArgumentException();
+        return getPiece(5*r + c/2 + 1);
+    }
+
+    /**
+     * Returns the 64 bit Zobrist key of this state: a hash of the pieces on
+     * the board and the side to move. It is maintained incrementally by
+     * doMove and undoMove, so this method takes constant time. Equal positions
+     * have equal keys, also in different runs of the program; different
+     * positions have different keys with very high probability.
+     * @return Zobrist key of this state
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the Zobrist key of the canonical form of this state: of this
+     * state if white is to move, else of its mirror image. A state and its
+     * mirror image have the same canonical key, so a table that is indexed by
+     * it needs to store only one of them. If black is to move, the key of
+     * the mirror image is computed from the pieces on the board.
+     * @return Zobrist key of the canonical form of this state
+     * @see Symmetry
+     * @see #fromCanonical(long)
+     */
+    public long getCanonicalHash() {
+        return whiteToMove ? hash : Zobrist.mirrorHash(white, black, kings, whiteToMove);
+    }
+
+    /** @return whether or not this state is in canonical form, that is,
+     * white is to move.
+     * @see #getCanonicalHash()
+     **/
+    public boolean isCanonical() {
+        return whiteToMove;
+    }
+
+    /**
+     * @return a new state with the canonical form of this position: a clone
+     *         if this state is canonical, else its mirror image. The mirror
+     *         image has no history, so the draw rules only apply to the
+     *         moves done in it.
+     * @see #getCanonicalHash()
+     */
+    public DraughtsState getCanonical() {
+        if (whiteToMove) return clone();
+        return new DraughtsState(new DraughtsPosition(Bitboards.rotate(black),
+                Bitboards.rotate(white), Bitboards.rotate(kings), true, getCanonicalHash()));
+    }
+
+    /**
+     * @param m packed move of this state
+     * @return move m in the frame of getCanonical(): m itself if this state is
+     *         canonical, else its mirror image.
+     */
+    public long toCanonical(long m) {
+        return whiteToMove ? m : Symmetry.mirrorMove(m);
+    }
+
+    /**
+     * @param m packed move of getCanonical(), for instance from a table that
+     *          is indexed by getCanonicalHash()
+     * @return the corresponding move of this state, packed
+     */
+    public long fromCanonical(long m) {
+        return whiteToMove ? m : Symmetry.mirrorMove(m);
+    }
+
+    /**
+     * @param m move of getCanonical()
+     * @return the corresponding move in getMoves(), or null if there is none
+     * @see #fromCanonical(long)
+     */
+    public Move fromCanonical(Move m) {
+        return toMove(fromCanonical(PackedMove.of(m)));
     }
 
     /**
@@ -177,7 +704,7 @@ public class DraughtsState implements GameState<Move> {
      */
     @Override
     public boolean isWhiteToMove() {
-        return bs.isWhiteToMove();
+        return whiteToMove;
     }
 
     /**
@@ -185,12 +712,46 @@ public class DraughtsState implements GameState<Move> {
      */
     @Override
     public void reset() {
-        moves=null;       // invalidate cached moves
-        bs.setBegin();
+        stack = null;
+        reversible = sinceCapture = 0;
+        history = null;
+        white = black = kings = 0;
+        for (int f = 1; f <= 20; f++) {
+            black |= 1L << Bitboards.bit(f);
+            white |= 1L << Bitboards.bit(f + 30);
+        }
+        whiteToMove = true;
+        hash = Zobrist.hash(white, black, kings, whiteToMove);
+    }
+
+    /**
+     * @return an immutable snapshot of the current position, that can be
+     *         shared between threads.
+     * @see DraughtsPosition#toState()
+     */
+    public DraughtsPosition getPosition() {
+        return new DraughtsPosition(white, black, kings, whiteToMove, hash);
     }
 
+    /**
+     * @return a state with the same position and side to move. Only the
+     *         position, a few longs, is copied, plus the keys of the plies
+     *         that can still be repeated (at most KING_MOVES_DRAW) for the
+     *         draw rules; the copy has no moves to undo and shares the
+     *         stateless move generator. The undo stack and the generated
+     *         moves are not copied, and only allocated when the copy needs
+     *         them.
+     */
     @Override
     public DraughtsState clone() {
         return new DraughtsState(this);
     }
+
+    /** @return a BoardState with the same position as this DraughtsState. **/
+    BoardState toBoardState() {
+        BoardState bs = new BoardState(10,10);
+        bs.setPieces(getPieces());
+        bs.setWhiteToMove(whiteToMove);
+        return bs;
+    }
 }
\ No newline at end of file
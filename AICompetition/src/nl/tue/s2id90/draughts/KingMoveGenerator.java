@@ -0,0 +1,115 @@
+package nl.tue.s2id90.draughts;
+
+import static nl.tue.s2id90.draughts.Bitboards.RAYS;
+
+/**
+ * Moves and captures of flying kings, on the precomputed rays of
+ * {@link Bitboards#RAYS}. Instead of stepping field by field along a
+ * diagonal, a king finds the first occupied field of a ray with a single bit
+ * scan, so the cost of a king move does not depend on the length of the
+ * diagonal. This keeps the generator fast in endgames with several kings.
+ * <p>
+ * In a capture sequence the captured pieces stay on the board until the
+ * sequence is complete: they can not be captured twice and they block the
+ * king, so they are kept in the occupied mask and excluded from the
+ * capturable pieces.
+ * @author huub
+ * @see BitboardMoveGenerator
+ */
+final class KingMoveGenerator {
+
+    private KingMoveGenerator() {}
+
+    /**
+     * Writes the non-capturing moves of the given kings to buffer[end...],
+     * packed as described in PackedMove.
+     * @return new end of the buffer
+     */
+    static int quietMoves(long kings, long occupied, long[] buffer, int end) {
+        for (long k = kings; k != 0; k &= k - 1) {
+            int from = Long.numberOfTrailingZeros(k);
+            for (int d = 0; d < 4; d++) {
+                for (long t = Bitboards.flight(d, from, occupied); t != 0; t &= t - 1) {
+                    buffer[end++] = PackedMove.pack(from, Long.numberOfTrailingZeros(t), 0L, false);
+                }
+            }
+        }
+        return end;
+    }
+
+    /** @return the number of non-capturing moves of the given kings. **/
+    static int countQuietMoves(long kings, long occupied) {
+        int count = 0;
+        for (long k = kings; k != 0; k &= k - 1) {
+            int from = Long.numberOfTrailingZeros(k);
+            for (int d = 0; d < 4; d++) {
+                count += Long.bitCount(Bitboards.flight(d, from, occupied));
+            }
+        }
+        return count;
+    }
+
+    /** @return whether or not one of the given kings can capture a piece of
+     * opp.
+     **/
+    static boolean canCapture(long kings, long occupied, long opp) {
+        for (long k = kings; k != 0; k &= k - 1) {
+            int b = Long.numberOfTrailingZeros(k);
+            for (int d = 0; d < 4; d++) {
+                if (landing(d, b, occupied, opp) >= 0) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the bit of the first piece of opp that a king on bit b meets in
+     * direction DIRECTIONS[d], provided that the field behind it is empty;
+     * -1 if there is no such piece.
+     */
+    static int landing(int d, int b, long occupied, long opp) {
+        long blockers = RAYS[d][b] & occupied;
+        if (blockers == 0) return -1;
+        int over = Bitboards.nearest(d, blockers);
+        if ((opp >>> over & 1) == 0) return -1;
+        long behind = RAYS[d][over];
+        if (behind == 0 || (occupied >>> Bitboards.nearest(d, behind) & 1) != 0) return -1;
+        return over;
+    }
+
+    /**
+     * Adds the capture sequences of the king that started on bit from and
+     * is now on bit b, having captured the pieces in taken, to
+     * buffer[offset..end); see BitboardMoveGenerator#add for the maximum
+     * capture rule.
+     * @param lastDir index of the direction of the previous capture, or -1
+     * @param occupied all pieces, including the captured ones, but without
+     *        the king itself
+     * @param opp the opponent pieces
+     * @param path records the sequence, to turn the captures into Moves; null
+     *        if only the packed moves are needed
+     * @return new end of the buffer
+     */
+    static int captures(int from, int b, int lastDir, long taken, long occupied,
+            long opp, long[] buffer, int offset, int end,
+            BitboardMoveGenerator.CapturePath path) {
+        if (BitboardMoveGenerator.hopeless(taken, opp, buffer, offset, end)) return end;
+        boolean more = false;
+        for (int d = 0; d < 4; d++) {
+            if (lastDir >= 0 && d == Bitboards.opposite(lastDir)) continue; // no turning back
+            int over = landing(d, b, occupied, opp & ~taken);
+            if (over < 0) continue;
+            more = true;
+            for (long t = Bitboards.flight(d, over, occupied); t != 0; t &= t - 1) {
+                int to = Long.numberOfTrailingZeros(t);
+                if (path != null) path.capture(taken, over, to);
+                end = captures(from, to, d, taken | 1L << over,
+                        occupied, opp, buffer, offset, end, path);
+            }
+        }
+        if (!more && taken != 0) {
+            end = BitboardMoveGenerator.add(buffer, offset, end, PackedMove.pack(from, b, taken, false), path);
+        }
+        return end;
+    }
+}
@@ -0,0 +1,125 @@
+package nl.tue.s2id90.draughts;
+
+import org10x10.dam.game.Move;
+
+/**
+ * Encodes a legal move of a DraughtsState in an int, for storage in
+ * transposition tables, opening books and game files. The code of a move is
+ * relative to the state in which it is played:
+ * <blockquote><pre>
+ *   bits  0- 5   begin field (1..50)
+ *   bits  6-11   end field (1..50)
+ *   bits 12-19   index of the move among the legal moves with the same begin
+ *                and end field, ordered by their captured pieces
+ * </pre></blockquote>
+ * Moves with the same begin and end field differ only in the pieces they
+ * capture. A mask of those pieces does not fit in an int, so the code stores
+ * the rank of the move among those moves instead; it is 0 for all quiet moves
+ * and for almost all captures. The value {@link #NONE} (0) is never the code of
+ * a move.
+ * <p>
+ * Encoding a quiet move does not generate any moves; encoding a capture, and
+ * decoding, generate the moves of the state into a buffer owned by the codec.
+ * A codec is therefore not thread safe; use one codec per thread.
+ * @author huub
+ * @see PackedMove
+ */
+public final class MoveCodec {
+
+    /** a value that is not the code of a move. **/
+    public static final int NONE = 0;
+
+    private static final int TO_SHIFT = 6;
+    private static final int INDEX_SHIFT = 12;
+
+    private final long[] buffer = new long[DraughtsState.MAX_MOVES];
+
+    /** @return begin field (1..50) of the move with the given code. **/
+    public static int getBeginField(int code) {
+        return code & 0x3F;
+    }
+
+    /** @return end field (1..50) of the move with the given code. **/
+    public static int getEndField(int code) {
+        return code >>> TO_SHIFT & 0x3F;
+    }
+
+    /** @return index of the move with the given code among the moves with the
+     * same begin and end field.
+     **/
+    public static int getIndex(int code) {
+        return code >>> INDEX_SHIFT;
+    }
+
+    /**
+     * @param s state
+     * @param m a legal move of s
+     * @return code of m in state s
+     */
+    public int encode(DraughtsState s, Move m) {
+        return encode(s, PackedMove.of(m));
+    }
+
+    /**
+     * @param s state
+     * @param m a legal move of s, packed as described in PackedMove
+     * @return code of m in state s
+     */
+    public int encode(DraughtsState s, long m) {
+        int code = PackedMove.getBeginField(m) | PackedMove.getEndField(m) << TO_SHIFT;
+        if (!PackedMove.isCapture(m)) return code;
+
+        // rank of m among the captures with the same begin and end field
+        long beginEnd = m & ~PackedMove.CAPTURES & ~PackedMove.PROMOTION;
+        int n = s.getCaptures(buffer, 0), index = 0;
+        for (int i = 0; i < n; i++) {
+            long c = buffer[i];
+            if ((c & ~PackedMove.CAPTURES & ~PackedMove.PROMOTION) == beginEnd
+                    && (c & PackedMove.CAPTURES) < (m & PackedMove.CAPTURES)) {
+                index++;
+            }
+        }
+        return code | index << INDEX_SHIFT;
+    }
+
+    /**
+     * @param s state
+     * @param code code of a move of s
+     * @return the move of s with the given code, packed as described in
+     * PackedMove; PackedMove.NONE if s has no such move.
+     */
+    public long decodePacked(DraughtsState s, int code) {
+        int from = getBeginField(code), to = getEndField(code);
+        if (from < 1 || from > 50 || to < 1 || to > 50) return PackedMove.NONE;
+        long beginEnd = Bitboards.bit(from) | (long) Bitboards.bit(to) << PackedMove.TO_SHIFT;
+
+        // the move with exactly index smaller captured masks
+        int n = s.getMoves(buffer, 0), index = getIndex(code);
+        for (int i = 0; i < n; i++) {
+            long m = buffer[i];
+            if ((m & ~PackedMove.CAPTURES & ~PackedMove.PROMOTION) != beginEnd) continue;
+            int rank = 0;
+            for (int j = 0; j < n; j++) {
+                long c = buffer[j];
+                if ((c & ~PackedMove.CAPTURES & ~PackedMove.PROMOTION) == beginEnd
+                        && (c & PackedMove.CAPTURES) < (m & PackedMove.CAPTURES)) {
+                    rank++;
+                }
+            }
+            if (rank == index) return m;
+        }
+        return PackedMove.NONE;
+    }
+
+    /**
+     * @param s state
+     * @param code code of a move of s
+     * @return the move of s.getMoves() with the given code, or null if s has
+     * no such move.
+     * @see DraughtsState#toMove(long)
+     */
+    public Move decode(DraughtsState s, int code) {
+        long m = decodePacked(s, code);
+        return m == PackedMove.NONE ? null : s.toMove(m);
+    }
+}
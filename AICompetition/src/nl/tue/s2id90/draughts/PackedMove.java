@@ -0,0 +1,103 @@
+package nl.tue.s2id90.draughts;
+
+import org10x10.dam.game.Move;
+
+/**
+ * Static helpers for moves that are packed in a long, as used by the
+ * allocation free methods of DraughtsState. The layout of a packed move is
+ * <blockquote><pre>
+ *   bits  0- 5   bit index of the begin field
+ *   bits  6-47   mask of the captured pieces, in the layout of Bitboards
+ *   bits 48-53   bit index of the end field
+ *   bit  54      set if the move promotes a man to king
+ * </pre></blockquote>
+ * Captured pieces can not stand on an edge field, so they always fit in bits
+ * 6-47 and the captures are stored in place, without any shifting.
+ * The value {@link #NONE} (0) is never a legal move.
+ * @author huub
+ * @see DraughtsState#getMoves(long[], int)
+ */
+public final class PackedMove {
+
+    /** a value that is not a move. **/
+    public static final long NONE = 0L;
+
+    static final long CAPTURES = 0x0000FFFFFFFFFFC0L;
+    static final int TO_SHIFT = 48;
+    static final long PROMOTION = 1L << 54;
+
+    private PackedMove() {}
+
+    /** @return packed move from bit index from to bit index to, capturing
+     * the pieces in mask captures.
+     **/
+    static long pack(int from, int to, long captures, boolean promotion) {
+        return from | captures | (long) to << TO_SHIFT | (promotion ? PROMOTION : 0);
+    }
+
+    /** @return packed form of move m.
+     * @see DraughtsState#toMove(long)
+     **/
+    public static long of(Move m) {
+        long captures = 0;
+        for (int i = 0; i < m.getCaptureCount(); i++) {
+            captures |= 1L << Bitboards.bit(m.getCapturedField(i));
+        }
+        return pack(Bitboards.bit(m.getBeginField()), Bitboards.bit(m.getEndField()),
+                captures, m.isPieceMove() && m.isPromotion());
+    }
+
+    /** @return bit index of the begin field of move m. **/
+    static int fromBit(long m) {
+        return (int) m & 0x3F;
+    }
+
+    /** @return bit index of the end field of move m. **/
+    static int toBit(long m) {
+        return (int) (m >>> TO_SHIFT) & 0x3F;
+    }
+
+    /** @return begin field (1..50) of move m. **/
+    public static int getBeginField(long m) {
+        return Bitboards.field(fromBit(m));
+    }
+
+    /** @return end field (1..50) of move m. **/
+    public static int getEndField(long m) {
+        return Bitboards.field(toBit(m));
+    }
+
+    /** @return whether or not move m captures any pieces. **/
+    public static boolean isCapture(long m) {
+        return (m & CAPTURES) != 0;
+    }
+
+    /** @return number of pieces captured by move m. **/
+    public static int getCaptureCount(long m) {
+        return Long.bitCount(m & CAPTURES);
+    }
+
+    /** @return whether or not move m promotes a man to king. **/
+    public static boolean isPromotion(long m) {
+        return (m & PROMOTION) != 0;
+    }
+
+    /** @return the captured fields of move m, in increasing order, stored
+     * in fields[offset...]; returns the number of captured fields.
+     **/
+    public static int getCapturedFields(long m, int[] fields, int offset) {
+        int n = 0;
+        for (long c = m & CAPTURES; c != 0; c &= c - 1) {
+            fields[offset + n++] = Bitboards.field(Long.numberOfTrailingZeros(c));
+        }
+        return n;
+    }
+
+    /** @return notation of move m, like "32-28" or "28x17"; unlike the
+     * notation of a Move, a packed move has no intermediate fields.
+     **/
+    public static String toString(long m) {
+        if (m == NONE) return "none";
+        return getBeginField(m) + (isCapture(m) ? "x" : "-") + getEndField(m);
+    }
+}
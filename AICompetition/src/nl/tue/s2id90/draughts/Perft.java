@@ -0,0 +1,357 @@
+package nl.tue.s2id90.draughts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import org10x10.dam.game.BoardState;
+import org10x10.dam.game.Move;
+import org10x10.dam.game.MoveGenerator;
+import org10x10.dam.game.MoveGeneratorFactory;
+import org10x10.dam.game.PDNUtil;
+
+/**
+ * Perft (performance test) for the move generator of DraughtsState: counts
+ * the leaves of the game tree of a position up to a fixed depth. The counts
+ * of the positions in {@link #SUITE} are known, so a wrong count reveals a
+ * bug in move generation or in doMove/undoMove. Divide splits the count over
+ * the root moves, which narrows a wrong count down to a single move.
+ * <p>
+ * The root moves are counted in parallel on a fork-join pool. Optionally,
+ * every node is cross-checked against the move generator of core2id90, and
+ * against the other move generators of DraughtsState: countMoves() and a
+ * StagedMoveIterator must find as many moves as getMoves(). The first
+ * position in which they disagree is reported. Note that
+ * the reference generator produces, in a few rare positions, king captures
+ * that capture the king's own begin field; such a position is reported as a
+ * difference, and the reference is wrong there.
+ * <p>
+ * Usage:
+ * <blockquote><pre>
+ *   java nl.tue.s2id90.draughts.Perft [-divide] [-check] [-threads n] depth [FEN]
+ * </pre></blockquote>
+ * Without a FEN, the positions of the suite are counted up to depth, and the
+ * counts are compared with the known ones.
+ * @author huub
+ */
+public final class Perft {
+
+    /** a position with known perft counts. **/
+    public static final class Position {
+        public final String name;
+        public final String fen;
+        private final long[] counts;
+
+        Position(String name, String fen, long... counts) {
+            this.name = name;
+            this.fen = fen;
+            this.counts = counts;
+        }
+
+        /** @return the maximal depth for which the count is known. **/
+        public int getMaxDepth() {
+            return counts.length;
+        }
+
+        /** @return the perft count at the given depth (1..getMaxDepth()). **/
+        public long getCount(int depth) {
+            return counts[depth - 1];
+        }
+
+        /** @return a new state with this position. **/
+        public DraughtsState getState() {
+            return Perft.getState(fen);
+        }
+    }
+
+    /** standard perft positions for international draughts. **/
+    public static final List<Position> SUITE = Arrays.asList(
+        new Position("initial position",
+            "W:W31-50:B1-20",
+            9, 81, 658, 4265, 27117, 167140, 1049442, 6483961, 41022423,
+            258895763),
+        new Position("Woldouby",
+            "W:W25,27,28,30,32,33,34,35,37,38:B12,13,14,16,18,19,21,23,24,26",
+            6, 12, 30, 73, 215, 590, 1944, 6269, 22369, 88050, 377436),
+        new Position("kings and promotions",
+            "W:WK47,K48,K49,K50,6,7,8,9,10:BK1,K2,K3,K4,41,42,43,44,45",
+            3, 9, 102, 743, 4293, 24103, 337568)
+    );
+
+    /** the result of a divide: the root moves and their counts. **/
+    public static final class Divide {
+        private final long[] moves;
+        private final long[] counts;
+        private final long nodes;
+        private final long nanos;
+        private final String difference;
+
+        private Divide(long[] moves, long[] counts, long nanos, String difference) {
+            this.moves = moves;
+            this.counts = counts;
+            this.nanos = nanos;
+            this.difference = difference;
+            long n = 0;
+            for (long c : counts) n += c;
+            this.nodes = n;
+        }
+
+        /** @return number of root moves. **/
+        public int size() {
+            return moves.length;
+        }
+
+        /** @return the i-th root move, packed as described in PackedMove. **/
+        public long getMove(int i) {
+            return moves[i];
+        }
+
+        /** @return the perft count below the i-th root move. **/
+        public long getCount(int i) {
+            return counts[i];
+        }
+
+        /** @return the perft count of the position. **/
+        public long getNodes() {
+            return nodes;
+        }
+
+        /** @return the time it took to count, in nanoseconds. **/
+        public long getNanos() {
+            return nanos;
+        }
+
+        /** @return counted nodes per second. **/
+        public long getNodesPerSecond() {
+            return nanos == 0 ? 0 : (long) (nodes * 1e9 / nanos);
+        }
+
+        /** @return description of the first position in which the move
+         * generator differs from the reference, or null if they agree (or if
+         * no cross-check was done).
+         **/
+        public String getDifference() {
+            return difference;
+        }
+    }
+
+    private final DraughtsState state;
+    private final long[][] buffers;         // buffers[d]: moves at depth d
+    private final MoveGenerator reference;  // null if not checking
+    private final StagedMoveIterator staged = new StagedMoveIterator();
+    private String difference;              // first difference with reference
+
+    private Perft(DraughtsState state, int depth, boolean check) {
+        this.state = state;
+        this.buffers = new long[depth + 1][DraughtsState.MAX_MOVES];
+        this.reference = check ? MoveGeneratorFactory.createMoveGeneratorInternational() : null;
+    }
+
+    private Perft() {
+        this(null, 0, false);
+    }
+
+    /** @return a new state with the position of the given FEN.
+     * @throws IllegalArgumentException if fen is not a valid FEN
+     **/
+    public static DraughtsState getState(String fen) {
+        BoardState bs;
+        try {
+            bs = PDNUtil.Fen2BoardState(fen);
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("invalid FEN: " + fen, ex);
+        }
+        if (bs == null) throw new IllegalArgumentException("invalid FEN: " + fen);
+        return new DraughtsState(bs);
+    }
+
+    /**
+     * Counts the leaves of the game tree of s up to the given depth, in the
+     * calling thread. State s is unchanged afterwards.
+     * @param s state
+     * @param depth depth &ge; 0
+     * @return perft count
+     */
+    public static long perft(DraughtsState s, int depth) {
+        if (depth < 0) throw new IllegalArgumentException("depth < 0");
+        if (depth == 0) return 1;
+        return new Perft(s, depth, false).count(depth);
+    }
+
+    /**
+     * Counts the leaves of the game tree of s up to the given depth,
+     * per root move. The root moves are counted in parallel on the given
+     * pool, each in its own clone of s.
+     * @param s state, is not changed
+     * @param depth depth &ge; 1
+     * @param pool pool that counts the root moves
+     * @param check whether or not to cross-check every node with the
+     * reference move generator
+     * @return the counts
+     */
+    public static Divide divide(DraughtsState s, int depth, ForkJoinPool pool, boolean check) {
+        if (depth < 1) throw new IllegalArgumentException("depth < 1");
+        long start = System.nanoTime();
+        Perft root = new Perft(s.clone(), 1, check);
+        long[] moves = Arrays.copyOf(root.buffers[1], root.state.getMoves(root.buffers[1], 0));
+        root.compare(moves, moves.length);
+
+        List<RecursiveTask<Long>> tasks = new ArrayList<>();
+        List<Perft> counters = new ArrayList<>();
+        for (long m : moves) {
+            DraughtsState child = s.clone();
+            child.doMove(m);
+            Perft counter = depth == 1 ? new Perft() : new Perft(child, depth - 1, check);
+            counters.add(counter);
+            tasks.add(new RecursiveTask<Long>() {
+                @Override
+                protected Long compute() {
+                    return depth == 1 ? 1L : counter.count(depth - 1);
+                }
+            });
+        }
+        for (RecursiveTask<Long> task : tasks) pool.execute(task);
+
+        long[] counts = new long[moves.length];
+        String difference = root.difference;
+        for (int i = 0; i < moves.length; i++) {
+            counts[i] = tasks.get(i).join();
+            if (difference == null) difference = counters.get(i).difference;
+        }
+        return new Divide(moves, counts, System.nanoTime() - start, difference);
+    }
+
+    /** @return number of leaves at the given depth (&ge; 1) below state. **/
+    private long count(int depth) {
+        if (depth == 1 && reference == null) return state.countMoves();
+        long[] moves = buffers[depth];
+        int n = state.getMoves(moves, 0);
+        if (reference != null && difference == null) compare(moves, n);
+        if (depth == 1) return n;
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            state.doMove(moves[i]);
+            nodes += count(depth - 1);
+            state.undoMove(moves[i]);
+        }
+        return nodes;
+    }
+
+    /** compares the n moves of state with those of countMoves(), a
+     * StagedMoveIterator and the reference generator; records the first
+     * difference.
+     **/
+    private void compare(long[] moves, int n) {
+        if (reference == null || difference != null) return;
+        BoardState bs = state.toBoardState();
+
+        // the counting and staged generators must agree with getMoves
+        int stagedCount = 0;
+        for (staged.reset(state); staged.hasNext(); staged.next()) stagedCount++;
+        if (state.countMoves() != n || stagedCount != n) {
+            difference = PDNUtil.BoardState2Fen(bs) + '\n' + state
+                    + "\ngetMoves: " + n + " moves, countMoves: " + state.countMoves()
+                    + ", StagedMoveIterator: " + stagedCount;
+            return;
+        }
+        List<Move> expected = reference.generateMoves(bs);
+
+        // the reference may list the same move (same captured pieces) more
+        // than once, via different paths
+        long[] mine = Arrays.copyOf(moves, n);
+        long[] theirs = new long[expected.size()];
+        for (int i = 0; i < theirs.length; i++) theirs[i] = PackedMove.of(expected.get(i));
+        Arrays.sort(mine);
+        Arrays.sort(theirs);
+        int k = 0;
+        for (int i = 0; i < theirs.length; i++) {
+            if (k == 0 || theirs[i] != theirs[k - 1]) theirs[k++] = theirs[i];
+        }
+        theirs = Arrays.copyOf(theirs, k);
+        if (Arrays.equals(mine, theirs)) return;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(PDNUtil.BoardState2Fen(bs)).append('\n').append(state);
+        sb.append("\nonly generated:");
+        for (long m : mine) {
+            if (Arrays.binarySearch(theirs, m) < 0) sb.append(' ').append(PackedMove.toString(m));
+        }
+        sb.append("\nonly in reference:");
+        for (Move m : expected) {
+            if (Arrays.binarySearch(mine, PackedMove.of(m)) < 0) sb.append(' ').append(m);
+        }
+        difference = sb.toString();
+    }
+
+    /**
+     * @param args [-divide] [-check] [-threads n] depth [FEN]
+     */
+    public static void main(String[] args) {
+        boolean divide = false, check = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int depth = -1;
+        String fen = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-divide": divide = true; break;
+                    case "-check": check = true; break;
+                    case "-threads": threads = Integer.parseInt(args[++i]); break;
+                    default:
+                        if (depth < 0) depth = Integer.parseInt(args[i]);
+                        else fen = args[i];
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+            depth = -1;
+        }
+        if (depth < 1) {
+            System.err.println("usage: Perft [-divide] [-check] [-threads n] depth [FEN]");
+            System.exit(1);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        boolean ok = true;
+        if (fen != null) {
+            ok = run(fen, getState(fen), depth, divide, check, pool, null);
+        } else {
+            for (Position p : SUITE) {
+                ok &= run(p.name, p.getState(), Math.min(depth, p.getMaxDepth()), divide, check, pool, p);
+            }
+        }
+        pool.shutdown();
+        System.exit(ok ? 0 : 1);
+    }
+
+    /** prints the counts of s at depth 1..maxDepth; returns false if a count
+     * differs from the known count in p (if not null), or if the cross-check
+     * found a difference.
+     **/
+    private static boolean run(String name, DraughtsState s, int maxDepth,
+            boolean divide, boolean check, ForkJoinPool pool, Position p) {
+        System.out.println(name);
+        System.out.println(s);
+        boolean ok = true;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            Divide d = divide(s, depth, pool, check);
+            String status = "";
+            if (p != null && d.getNodes() != p.getCount(depth)) {
+                status = "  WRONG, expected " + p.getCount(depth);
+                ok = false;
+            }
+            System.out.printf("depth %2d  %,15d nodes  %8.3f s  %,13d nodes/s%s%n",
+                    depth, d.getNodes(), d.getNanos() / 1e9, d.getNodesPerSecond(), status);
+            if (divide && depth == maxDepth) {
+                for (int i = 0; i < d.size(); i++) {
+                    System.out.printf("  %-8s %,15d%n", PackedMove.toString(d.getMove(i)), d.getCount(i));
+                }
+            }
+            if (d.getDifference() != null) {
+                System.out.println("move generators differ in\n" + d.getDifference());
+                return false;
+            }
+        }
+        return ok;
+    }
+}
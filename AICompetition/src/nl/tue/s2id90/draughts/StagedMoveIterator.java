@@ -0,0 +1,91 @@
+package nl.tue.s2id90.draughts;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates lazily over the legal moves of a DraughtsState, packed as
+ * described in PackedMove, in two stages: first the captures, then the quiet
+ * moves. The quiet moves are only generated when the capture stage has been
+ * consumed and turned out to be empty; if there is a capture, the quiet moves
+ * are illegal and are never generated. A search that cuts off before the
+ * capture stage is exhausted does not pay for the quiet moves at all.
+ * <p>
+ * An iterator owns its move buffer and can be reused for any number of
+ * states, so a search that keeps one iterator per ply does not allocate any
+ * memory per node:
+ * <blockquote><pre>
+ *   StagedMoveIterator it = iterators[ply];
+ *   for (it.reset(s); it.hasNext(); ) {
+ *       long m = it.next();
+ *       s.doMove(m);
+ *       ...
+ *       s.undoMove(m);
+ *   }
+ * </pre></blockquote>
+ * Moves done between the calls of next() must have been undone before the
+ * next call of hasNext(), because the quiet stage is generated in the state
+ * given to reset.
+ * @author huub
+ * @see DraughtsState#getCaptures(long[], int)
+ * @see DraughtsState#getQuietMoves(long[], int)
+ */
+public class StagedMoveIterator {
+    /** stage before the captures have been generated. **/
+    public static final int START = 0;
+    /** stage in which the captures are returned. **/
+    public static final int CAPTURES = 1;
+    /** stage in which the quiet moves are returned. **/
+    public static final int QUIET_MOVES = 2;
+    /** stage after the last move has been returned. **/
+    public static final int DONE = 3;
+
+    private final long[] buffer = new long[DraughtsState.MAX_MOVES];
+    private DraughtsState state;
+    private int stage = DONE;
+    private int index, count;
+
+    /**
+     * starts a new iteration over the moves of s.
+     * @param s state
+     */
+    public void reset(DraughtsState s) {
+        state = s;
+        stage = START;
+        index = count = 0;
+    }
+
+    /** @return whether or not there is another move; may generate the next
+     * stage.
+     **/
+    public boolean hasNext() {
+        while (index == count && stage != DONE) {
+            if (stage == START) {
+                count = state.getCaptures(buffer, 0);
+                stage = CAPTURES;
+            } else if (stage == CAPTURES && count == 0) {
+                count = state.getQuietMoves(buffer, 0);
+                stage = QUIET_MOVES;
+            } else {
+                stage = DONE;
+                count = 0;
+            }
+            index = 0;
+        }
+        return index < count;
+    }
+
+    /** @return the next move
+     * @throws NoSuchElementException if there are no more moves
+     **/
+    public long next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return buffer[index++];
+    }
+
+    /** @return the stage of the last move that was returned by next(); one of
+     * {START, CAPTURES, QUIET_MOVES, DONE}.
+     **/
+    public int getStage() {
+        return stage;
+    }
+}
@@ -0,0 +1,56 @@
+package nl.tue.s2id90.draughts;
+
+import static nl.tue.s2id90.draughts.DraughtsState.BLACKKING;
+import static nl.tue.s2id90.draughts.DraughtsState.BLACKPIECE;
+import static nl.tue.s2id90.draughts.DraughtsState.WHITEKING;
+import static nl.tue.s2id90.draughts.DraughtsState.WHITEPIECE;
+
+/**
+ * The symmetry of the draughts board: a position with the colors swapped
+ * and the board rotated 180 degrees, so that field f becomes field 51-f, is
+ * the same position seen from the other side. Its mirror image has the
+ * other side to move, and its moves are the mirror images of the original
+ * moves.
+ * <p>
+ * Of every position and its mirror image exactly one has white to move; that
+ * one is the canonical form. A cache, opening book or endgame database that
+ * stores canonical positions only stores half of the positions, see
+ * {@link DraughtsState#getCanonicalHash()}:
+ * <blockquote><pre>
+ *   long m = book.get(s.getCanonicalHash());   // a move in canonical frame
+ *   s.doMove(s.fromCanonical(m));
+ * </pre></blockquote>
+ * @author huub
+ */
+public final class Symmetry {
+
+    private Symmetry() {}
+
+    /** @return the field that field f (1..50) is mapped to. **/
+    public static int mirrorField(int f) {
+        return 51 - f;
+    }
+
+    /** @return piece p with its color swapped; EMPTY and WHITEFIELD are
+     * unchanged.
+     **/
+    public static int mirrorPiece(int p) {
+        switch (p) {
+            case WHITEPIECE: return BLACKPIECE;
+            case BLACKPIECE: return WHITEPIECE;
+            case WHITEKING: return BLACKKING;
+            case BLACKKING: return WHITEKING;
+            default: return p;
+        }
+    }
+
+    /** @return the mirror image of packed move m: the same move played by
+     * the other color on the rotated board.
+     **/
+    public static long mirrorMove(long m) {
+        if (m == PackedMove.NONE) return m;
+        return PackedMove.pack(Bitboards.rotate(PackedMove.fromBit(m)),
+                Bitboards.rotate(PackedMove.toBit(m)),
+                Bitboards.rotate(m & PackedMove.CAPTURES), PackedMove.isPromotion(m));
+    }
+}
@@ -0,0 +1,64 @@
+package nl.tue.s2id90.draughts;
+
+import static nl.tue.s2id90.draughts.DraughtsState.BLACKKING;
+import static nl.tue.s2id90.draughts.DraughtsState.BLACKPIECE;
+import static nl.tue.s2id90.draughts.DraughtsState.WHITEKING;
+import static nl.tue.s2id90.draughts.DraughtsState.WHITEPIECE;
+import java.util.Random;
+
+/**
+ * Zobrist keys for draughts positions. The key of a position is the
+ * exclusive or of the keys of all (piece, field) pairs on the board, and of
+ * {@link #SIDE} when black is to move. Since exclusive or is its own inverse,
+ * a move changes the key by the keys of the fields it changes only.
+ * <p>
+ * The keys are generated from a fixed seed, so the key of a position is the
+ * same in every run of the program; it can be stored in opening books and
+ * other files.
+ * @author huub
+ * @see DraughtsState#getHash()
+ */
+final class Zobrist {
+
+    /** key for black to move. **/
+    static final long SIDE;
+
+    /** KEYS[p][b] is the key of piece p (WHITEPIECE..BLACKKING) on bit b. **/
+    private static final long[][] KEYS = new long[5][64];
+
+    static {
+        Random random = new Random(2090L);
+        for (int p = WHITEPIECE; p <= BLACKKING; p++) {
+            for (int f = 1; f <= 50; f++) {
+                KEYS[p][Bitboards.bit(f)] = random.nextLong();
+            }
+        }
+        SIDE = random.nextLong();
+    }
+
+    private Zobrist() {}
+
+    /** @return key of a man or king of the given color on bit b. **/
+    static long key(boolean white, boolean king, int b) {
+        return KEYS[white ? (king ? WHITEKING : WHITEPIECE) : (king ? BLACKKING : BLACKPIECE)][b];
+    }
+
+    /** @return the key of the mirror image of the given position, computed
+     * from scratch.
+     * @see Symmetry
+     **/
+    static long mirrorHash(long white, long black, long kings, boolean whiteToMove) {
+        return hash(Bitboards.rotate(black), Bitboards.rotate(white), Bitboards.rotate(kings),
+                !whiteToMove);
+    }
+
+    /** @return the key of the given position, computed from scratch. **/
+    static long hash(long white, long black, long kings, boolean whiteToMove) {
+        long h = whiteToMove ? 0 : SIDE;
+        for (long m = white | black; m != 0; m &= m - 1) {
+            int b = Long.numberOfTrailingZeros(m);
+            h ^= KEYS[Bitboards.piece(white, black, kings, b)][b];
+        }
+        return h;
+    }
+}
@@ -6,10 +6,14 @@ import java.util.logging.Logger;
 import javax.swing.ImageIcon;
 import nl.tue.s2id90.draughts.DraughtsState;
 import nl.tue.s2id90.game.Player;
+import nl.tue.s2id90.game.SearchInfo;
+import nl.tue.s2id90.game.SearchListener;
 import org10x10.dam.game.Move;
 
 /**
- * Base class for draughts players. 
+ * Base class for draughts players. A player that wants to know its time up
+ * front and report its progress also implements
+ * {@link nl.tue.s2id90.game.LimitedPlayer}; this class keeps its listener.
  * @author huub
  */
 public abstract class DraughtsPlayer implements Player<Move,DraughtsState> {
@@ -18,6 +22,7 @@ public abstract class DraughtsPlayer implements Player<Move,DraughtsState> {
     private static final String FOLDER="/nl/tue/s2id90/draughts/player/";
     private static final String ICON="unknown.png";
     private URL icon;
+    private volatile SearchListener<Move> listener = null;
 
     /** constructs DraughtsPlayer with icon at given url. **/
     public DraughtsPlayer(URL icon) {
@@ -58,6 +63,24 @@ public abstract class DraughtsPlayer implements Player<Move,DraughtsState> {
         return null;
     }
     
+    /** sets the listener of the progress reports of this player; see
+     * LimitedPlayer.
+     * @param listener the listener, or null for none
+     */
+    public void setSearchListener(SearchListener<Move> listener) {
+        this.listener = listener;
+    }
+    
+    /** sends a progress report to the listener, if there is one.
+     * @param info progress report
+     */
+    protected void publish(SearchInfo<Move> info) {
+        SearchListener<Move> l = listener;
+        if (l != null) {
+            l.searchInfo(info);
+        }
+    }
+    
     @Override
     /** empty stop method, should be overridden by a method that stops complicated 
      * computations.
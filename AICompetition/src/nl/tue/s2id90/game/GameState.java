@@ -15,10 +15,20 @@ public interface GameState<Move> {
     List<Move> getMoves();
 
     /**
-     * @return whether or not there are any valid moves in this state
+     * @return whether or not the game is over in this state: there are no
+     *         valid moves, or the game is drawn by the rules of the game.
      */
     boolean isEndState();
 
+    /**
+     * @return the result of the game in this state, or UNKNOWN if the game is
+     *         not over yet. States that do not know the rules of the game
+     *         always return UNKNOWN.
+     */
+    default Game.Result getResult() {
+        return Game.Result.UNKNOWN;
+    }
+
     /**
      * applies move m in this state.
      * @param m move to be applied
@@ -0,0 +1,31 @@
+package nl.tue.s2id90.game;
+
+/**
+ * A player that can be told the limits of its search up front, and that
+ * reports its progress. The framework calls getMove(State, SearchLimits)
+ * instead of getMove(State) for players that implement this interface; other
+ * players keep working as before. stop() must still be obeyed: the framework
+ * calls it when the time is up, also when the player was given a deadline.
+ * @author huub
+ * @param <Move>
+ * @param <State>
+ */
+public interface LimitedPlayer<Move, State extends GameState<Move>>
+        extends Player<Move, State> {
+
+    /** computes a valid move in the given game state s within the given
+     * limits. This method should be prepared to immediately return a Move
+     * when stop() has been called.
+     * @param s game state
+     * @param limits limits of the search
+     * @return a valid move in State s.
+     **/
+    Move getMove(State s, SearchLimits limits);
+
+    /**
+     * sets the listener that receives the progress reports of the searches
+     * of this player.
+     * @param listener the listener, or null for none
+     */
+    void setSearchListener(SearchListener<Move> listener);
+}
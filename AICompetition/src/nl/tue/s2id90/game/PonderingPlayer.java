@@ -0,0 +1,43 @@
+package nl.tue.s2id90.game;
+
+/**
+ * A player that can think on the time of its opponent. After this player has
+ * moved, the framework asks it for the reply it expects, and lets it search
+ * the position after that reply with ponder(State), while the opponent thinks:
+ * <ul>
+ * <li>if the opponent plays the expected reply (a ponder hit), the framework
+ *     calls ponderHit(SearchLimits): the ponder search becomes the search for
+ *     the next move, and its result is played;</li>
+ * <li>otherwise (a ponder miss) it calls stop(), discards the result, and
+ *     calls getMove as usual.</li>
+ * </ul>
+ * The calls are never concurrent, except for ponderHit() and stop(), which
+ * are called from another thread while ponder() runs, or even just before
+ * it starts. getPonderMove() is always called before ponder().
+ * <p>
+ * A player only ponders against a human or against another player that
+ * ponders, so that the opponent does not lose processor time to it.
+ * @author huub
+ * @param <Move>
+ * @param <State>
+ */
+public interface PonderingPlayer<Move, State extends GameState<Move>>
+        extends LimitedPlayer<Move, State> {
+
+    /** @return the reply this player expects to the move it just returned,
+     *  or null if it does not want to ponder. **/
+    Move getPonderMove();
+
+    /** searches state s, the state after the expected reply, until
+     * ponderHit() or stop() is called, or until the search is complete.
+     * @param s game state
+     * @return a valid move in State s.
+     **/
+    Move ponder(State s);
+
+    /** the opponent played the expected reply: from now on, the running
+     * ponder search must respect the given limits.
+     * @param limits limits of the search for the next move
+     */
+    void ponderHit(SearchLimits limits);
+}
@@ -0,0 +1,71 @@
+package nl.tue.s2id90.game;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A progress report of a search, typically sent after every completed
+ * iteration of an iterative deepening search.
+ * @author huub
+ * @param <Move>
+ * @see SearchListener
+ */
+public final class SearchInfo<Move> {
+    private final int depth;
+    private final int score;
+    private final long nodes;
+    private final long time;
+    private final List<Move> pv;
+    private final int hashFull;
+
+    /**
+     * @param depth the depth of the search in plies
+     * @param score the value of the best move, for the player to move
+     * @param nodes number of nodes searched so far
+     * @param time milliseconds since the start of the search
+     * @param pv principal variation: the best move and the expected replies
+     * @param hashFull filling of the transposition table in permille, or -1
+     *        if the player has no table
+     */
+    public SearchInfo(int depth, int score, long nodes, long time, List<Move> pv,
+            int hashFull) {
+        this.depth = depth;
+        this.score = score;
+        this.nodes = nodes;
+        this.time = time;
+        this.pv = Collections.unmodifiableList(pv);
+        this.hashFull = hashFull;
+    }
+
+    /** @return the depth of the search in plies. **/
+    public int getDepth() { return depth; }
+
+    /** @return the value of the best move, for the player to move. **/
+    public int getScore() { return score; }
+
+    /** @return the number of nodes searched so far. **/
+    public long getNodes() { return nodes; }
+
+    /** @return milliseconds since the start of the search. **/
+    public long getTime() { return time; }
+
+    /** @return the number of nodes per second. **/
+    public long getNodesPerSecond() {
+        return 1000 * nodes / Math.max(1, time);
+    }
+
+    /** @return the principal variation, the best move first. **/
+    public List<Move> getPV() { return pv; }
+
+    /** @return filling of the transposition table in permille, or -1 if
+     * unknown. **/
+    public int getHashFull() { return hashFull; }
+
+    @Override
+    public String toString() {
+        return "depth " + depth + " score " + score + " nodes " + nodes
+                + " nps " + getNodesPerSecond() + " time " + time
+                + (hashFull < 0 ? "" : " hashfull " + hashFull)
+                + " pv " + pv;
+    }
+}
@@ -0,0 +1,131 @@
+package nl.tue.s2id90.game;
+
+/**
+ * The limits of a search for a move: a wall-clock deadline, a maximum depth,
+ * a maximum number of nodes, or none at all (infinite: search until stop()).
+ * Limits are immutable; the with-methods return a copy with one more limit.
+ * A player stops at the first limit it reaches, and always when stop() is
+ * called.
+ * <pre>
+ *   SearchLimits limits = SearchLimits.time(2000).withDepth(12);
+ * </pre>
+ * @author huub
+ * @see LimitedPlayer
+ */
+public final class SearchLimits {
+    /** limits that do not limit the search at all. **/
+    private static final SearchLimits INFINITE
+            = new SearchLimits(Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    private final long deadline;
+    private final int depth;
+    private final long nodes;
+
+    private SearchLimits(long deadline, int depth, long nodes) {
+        this.deadline = deadline;
+        this.depth = depth;
+        this.nodes = nodes;
+    }
+
+    /** @return limits that let the player search until stop() is called. **/
+    public static SearchLimits infinite() {
+        return INFINITE;
+    }
+
+    /**
+     * @param millis time for the search in milliseconds, from now
+     * @return limits with a deadline millis milliseconds from now.
+     */
+    public static SearchLimits time(long millis) {
+        return INFINITE.withDeadline(System.currentTimeMillis() + millis);
+    }
+
+    /**
+     * @param depth maximum depth in plies
+     * @return limits with only a maximum depth.
+     */
+    public static SearchLimits depth(int depth) {
+        return INFINITE.withDepth(depth);
+    }
+
+    /**
+     * @param nodes maximum number of nodes
+     * @return limits with only a maximum number of nodes.
+     */
+    public static SearchLimits nodes(long nodes) {
+        return INFINITE.withNodes(nodes);
+    }
+
+    /**
+     * @param deadline as in System.currentTimeMillis()
+     * @return these limits with the given deadline.
+     */
+    public SearchLimits withDeadline(long deadline) {
+        return new SearchLimits(deadline, depth, nodes);
+    }
+
+    /** @return these limits with the given maximum depth. **/
+    public SearchLimits withDepth(int depth) {
+        if (depth < 1) throw new IllegalArgumentException("depth < 1");
+        return new SearchLimits(deadline, depth, nodes);
+    }
+
+    /** @return these limits with the given maximum number of nodes. **/
+    public SearchLimits withNodes(long nodes) {
+        if (nodes < 1) throw new IllegalArgumentException("nodes < 1");
+        return new SearchLimits(deadline, depth, nodes);
+    }
+
+    /** @return whether the search is only limited by stop(). **/
+    public boolean isInfinite() {
+        return !hasDeadline() && !hasDepth() && !hasNodes();
+    }
+
+    /** @return whether there is a deadline. **/
+    public boolean hasDeadline() {
+        return deadline != Long.MAX_VALUE;
+    }
+
+    /** @return the deadline as in System.currentTimeMillis(), or
+     * Long.MAX_VALUE if there is none. **/
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /** @return the milliseconds left until the deadline, at least 0, or
+     * Long.MAX_VALUE if there is no deadline. **/
+    public long getRemainingTime() {
+        return hasDeadline() ? Math.max(0, deadline - System.currentTimeMillis())
+                             : Long.MAX_VALUE;
+    }
+
+    /** @return whether there is a maximum depth. **/
+    public boolean hasDepth() {
+        return depth != Integer.MAX_VALUE;
+    }
+
+    /** @return the maximum depth, or Integer.MAX_VALUE if there is none. **/
+    public int getDepth() {
+        return depth;
+    }
+
+    /** @return whether there is a maximum number of nodes. **/
+    public boolean hasNodes() {
+        return nodes != Long.MAX_VALUE;
+    }
+
+    /** @return the maximum number of nodes, or Long.MAX_VALUE if there is none. **/
+    public long getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public String toString() {
+        if (isInfinite()) return "infinite";
+        StringBuilder sb = new StringBuilder();
+        if (hasDeadline()) sb.append(" time ").append(getRemainingTime()).append(" ms");
+        if (hasDepth()) sb.append(" depth ").append(depth);
+        if (hasNodes()) sb.append(" nodes ").append(nodes);
+        return sb.substring(1);
+    }
+}
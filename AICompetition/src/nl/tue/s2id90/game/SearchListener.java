@@ -0,0 +1,17 @@
+package nl.tue.s2id90.game;
+
+/**
+ * Receives the progress reports of a search.
+ * @author huub
+ * @param <Move>
+ * @see LimitedPlayer#setSearchListener(SearchListener)
+ */
+@FunctionalInterface
+public interface SearchListener<Move> {
+    /**
+     * called by the search thread of a player; implementations should return
+     * quickly.
+     * @param info progress report
+     */
+    void searchInfo(SearchInfo<Move> info);
+}